@@ -0,0 +1,438 @@
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Timings of the faster structures against the code they replaced, or
+ * against the other mode they can run in. Every input comes from a fixed
+ * seed, so each run does the same work, and both sides must give the same
+ * answers or the run fails. Each side is run once to warm up and then
+ * REPEATS times, and the best time is printed.
+ * Usage: java Benchmark [n]
+ * where n, a million by default, sets the size of every input.
+ *
+ * @author Yu-Kai Lo
+ * @version 1.0
+ */
+public class Benchmark {
+    /**
+     * The number of timed runs of each side.
+     */
+    static final int REPEATS = 3;
+
+    private PrintStream out;
+
+    /**
+     * Create a benchmark that prints its timings to a stream.
+     *
+     * @param out
+     *            The stream for the timings.
+     */
+    Benchmark(PrintStream out) {
+        this.out = out;
+    }
+
+
+    /**
+     * Run every benchmark.
+     *
+     * @param args
+     *            The size of the inputs, if given.
+     * @throws Exception
+     */
+    public static void main(String[] args) throws Exception {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+        new Benchmark(System.out).runAll(n);
+    }
+
+
+    /**
+     * Run every benchmark with inputs of a size.
+     *
+     * @param n
+     *            The size of the inputs.
+     * @throws Exception
+     */
+    void runAll(int n) throws Exception {
+        unionFind(Integer.highestOneBit(n));
+        hashFunction(n / 10);
+        concurrentSearch(n, 4);
+        floyd(Math.max(n / 2000, 2));
+    }
+
+
+    /**
+     * Time union/find against the tree without union by size or path
+     * compression, on two kinds of trees. Balanced trees are merged level
+     * by level, through their roots so that no find shortens a path on the
+     * way. That makes them as deep as union by size lets them get, and
+     * both versions hang the first root under the second. A chain is
+     * linked one node at a time, which the old union always hung under the
+     * new node, so its finds walked the whole chain. Each is followed by a
+     * find from every node.
+     *
+     * @param n
+     *            The number of nodes, a power of two.
+     * @throws Exception
+     */
+    void unionFind(int n) throws Exception {
+        compare("union/find, balanced, " + n + " nodes", () -> {
+            int[] parent = new int[n];
+            Arrays.fill(parent, -1);
+            for (int step = 1; step < n; step *= 2) {
+                for (int i = 0; i + step < n; i += 2 * step) {
+                    plainUnion(parent, i + step - 1, i + 2 * step - 1);
+                }
+            }
+            long sum = 0;
+            for (int v = 0; v < n; v++) {
+                sum += plainFind(parent, v);
+            }
+            return sum;
+        }, () -> {
+            ParPtrTree tree = new ParPtrTree(n);
+            for (int step = 1; step < n; step *= 2) {
+                for (int i = 0; i + step < n; i += 2 * step) {
+                    tree.union(i + step - 1, i + 2 * step - 1);
+                }
+            }
+            long sum = 0;
+            for (int v = 0; v < n; v++) {
+                sum += tree.find(v);
+            }
+            return sum;
+        });
+
+        int chain = Math.min(n, 1 << 15);
+        compare("union/find, chain, " + chain + " nodes", () -> {
+            int[] parent = new int[chain];
+            Arrays.fill(parent, -1);
+            for (int i = 1; i < chain; i++) {
+                plainUnion(parent, i - 1, i);
+            }
+            int root = plainFind(parent, 0);
+            long sum = 0;
+            for (int v = 0; v < chain; v++) {
+                sum += plainFind(parent, v) == root ? 1 : 0;
+            }
+            return sum;
+        }, () -> {
+            ParPtrTree tree = new ParPtrTree(chain);
+            for (int i = 1; i < chain; i++) {
+                tree.union(i - 1, i);
+            }
+            int root = tree.find(0);
+            long sum = 0;
+            for (int v = 0; v < chain; v++) {
+                sum += tree.find(v) == root ? 1 : 0;
+            }
+            return sum;
+        });
+    }
+
+
+    /**
+     * Time Hash.h on random keys against the version that copied every
+     * block of four characters out of the key.
+     *
+     * @param keys
+     *            The number of keys.
+     * @throws Exception
+     */
+    void hashFunction(int keys) throws Exception {
+        String[] words = words(keys, 64, 11);
+        compare("Hash.h, " + keys + " keys x 10", () -> {
+            long sum = 0;
+            for (int round = 0; round < 10; round++) {
+                for (String word : words) {
+                    sum += blockHash(word, 1 << 20);
+                }
+            }
+            return sum;
+        }, () -> {
+            long sum = 0;
+            for (int round = 0; round < 10; round++) {
+                for (String word : words) {
+                    sum += Hash.h(word, 1 << 20);
+                }
+            }
+            return sum;
+        });
+    }
+
+
+    /**
+     * Time searches of a full ConcurrentHash spread over threads against
+     * the same searches of a Hash on one thread.
+     *
+     * @param searches
+     *            The number of searches.
+     * @param threads
+     *            The number of threads.
+     * @throws Exception
+     */
+    void concurrentSearch(int searches, int threads) throws Exception {
+        String[] words = words(Math.max(searches / 10, 1), 24, 17);
+        SymbolTable hash = new Hash(10, "Song", new NullSink());
+        SymbolTable shared = new ConcurrentHash(10, "Song", new NullSink());
+        for (int i = 0; i < words.length; i++) {
+            hash.hashInsert(words[i], Hash.fold(words[i]), i);
+            shared.hashInsert(words[i], Hash.fold(words[i]), i);
+        }
+        compare("search, " + searches + " on 1 vs " + threads + " threads",
+            () -> search(hash, words, 0, searches, 1), () -> {
+                long[] sums = new long[threads];
+                Thread[] running = new Thread[threads];
+                for (int t = 0; t < threads; t++) {
+                    final int id = t;
+                    running[t] = new Thread(() -> sums[id] = search(shared,
+                        words, id, searches, threads));
+                    running[t].start();
+                }
+                long sum = 0;
+                for (int t = 0; t < threads; t++) {
+                    running[t].join();
+                    sum += sums[t];
+                }
+                return sum;
+            });
+    }
+
+
+    /**
+     * Time the shortest paths of a random connected graph found by the
+     * blocked Floyd over its members against the original Floyd, which
+     * calls hasEdge for every pair.
+     *
+     * @param n
+     *            The number of vertices.
+     * @throws Exception
+     */
+    void floyd(int n) throws Exception {
+        GraphL g = new GraphL();
+        g.init(n);
+        Random random = new Random(19);
+        int[] members = new int[n];
+        for (int i = 0; i < n; i++) {
+            members[i] = i;
+            if (i > 0) {
+                connect(g, i, random.nextInt(i));
+            }
+        }
+        for (int e = 0; e < n; e++) {
+            connect(g, random.nextInt(n), random.nextInt(n));
+        }
+        compare("Floyd, " + n + " vertices", () -> {
+            int[][] d = new int[g.nodeCount()][g.nodeCount()];
+            new Floyd(g, d);
+            long sum = 0;
+            for (int i = 0; i < n; i++) {
+                for (int j = 0; j < n; j++) {
+                    sum += d[i][j];
+                }
+            }
+            return sum;
+        }, () -> {
+            Floyd floyd = new Floyd(g, members);
+            long sum = 0;
+            for (int i = 0; i < n; i++) {
+                for (int j = 0; j < n; j++) {
+                    sum += floyd.distance(i, j);
+                }
+            }
+            return sum;
+        });
+    }
+
+
+    /**
+     * Time two sides of a benchmark and print the best time of each.
+     *
+     * @param name
+     *            What is timed.
+     * @param before
+     *            The code being replaced.
+     * @param after
+     *            The code replacing it.
+     * @throws Exception
+     *             If the two sides give different answers.
+     */
+    private void compare(String name, Side before, Side after)
+        throws Exception {
+        long[] best = new long[2];
+        long[] answers = new long[2];
+        Side[] sides = { before, after };
+        for (int s = 0; s < 2; s++) {
+            best[s] = Long.MAX_VALUE;
+            for (int run = 0; run <= REPEATS; run++) {
+                long start = System.nanoTime();
+                answers[s] = sides[s].run();
+                long time = System.nanoTime() - start;
+                if (run > 0) {
+                    best[s] = Math.min(best[s], time);
+                }
+            }
+        }
+        if (answers[0] != answers[1]) {
+            throw new IllegalStateException(name + ": " + answers[0]
+                + " before, " + answers[1] + " after");
+        }
+        out.println(name + ": " + best[0] / 1000000 + " ms before, "
+            + best[1] / 1000000 + " ms after");
+    }
+
+
+    /**
+     * Search one thread's share of the keys.
+     *
+     * @param table
+     *            The table.
+     * @param words
+     *            The keys, all in the table.
+     * @param first
+     *            The thread's number.
+     * @param searches
+     *            The number of searches of all threads.
+     * @param threads
+     *            The number of threads.
+     * @return The sum of the values found.
+     */
+    private static long search(SymbolTable table, String[] words, int first,
+        int searches, int threads) {
+        long sum = 0;
+        for (int i = first; i < searches; i += threads) {
+            String word = words[i % words.length];
+            sum += table.hashGet(word, Hash.fold(word));
+        }
+        return sum;
+    }
+
+
+    /**
+     * Make random keys, some with characters above the byte range.
+     *
+     * @param count
+     *            The number of keys.
+     * @param maxLength
+     *            One more than the longest key.
+     * @param seed
+     *            The seed.
+     * @return The keys.
+     */
+    private static String[] words(int count, int maxLength, long seed) {
+        Random random = new Random(seed);
+        String[] words = new String[count];
+        for (int i = 0; i < count; i++) {
+            char[] c = new char[random.nextInt(maxLength)];
+            for (int k = 0; k < c.length; k++) {
+                c[k] = (char)(random.nextInt(20) == 0
+                    ? 256 + random.nextInt(1000)
+                    : 'a' + random.nextInt(26));
+            }
+            words[i] = new String(c) + i;
+        }
+        return words;
+    }
+
+
+    /**
+     * Join two nodes with an edge in both directions.
+     *
+     * @param g
+     *            The graph.
+     * @param a
+     *            The first node.
+     * @param b
+     *            The second node.
+     */
+    private static void connect(GraphL g, int a, int b) {
+        if (a != b && !g.hasEdge(a, b)) {
+            g.addEdge(a, b, 1);
+            g.addEdge(b, a, 1);
+        }
+    }
+
+
+    /**
+     * Merge two trees as ParPtrTree did before union by size.
+     *
+     * @param parent
+     *            The parent of each node, -1 at the roots.
+     * @param a
+     *            The first node.
+     * @param b
+     *            The second node.
+     */
+    private static void plainUnion(int[] parent, int a, int b) {
+        int root1 = plainFind(parent, a);
+        int root2 = plainFind(parent, b);
+        if (root1 != root2) {
+            parent[root1] = root2;
+        }
+    }
+
+
+    /**
+     * Find the root of a node's tree as ParPtrTree did before union by
+     * size and path compression.
+     *
+     * @param parent
+     *            The parent of each node, -1 at the roots.
+     * @param curr
+     *            The node.
+     * @return The root.
+     */
+    private static int plainFind(int[] parent, int curr) {
+        while (parent[curr] != -1) {
+            curr = parent[curr];
+        }
+        return curr;
+    }
+
+
+    /**
+     * The hash function as it was before Hash.h read the characters in
+     * place.
+     *
+     * @param s
+     *            The string that we are hashing
+     * @param length
+     *            Length of the hash table
+     * @return The home slot in the table for this key
+     */
+    private static int blockHash(String s, int length) {
+        int intLength = s.length() / 4;
+        long sum = 0;
+        for (int j = 0; j < intLength; j++) {
+            char[] c = s.substring(j * 4, (j * 4) + 4).toCharArray();
+            long mult = 1;
+            for (int k = 0; k < c.length; k++) {
+                sum += c[k] * mult;
+                mult *= 256;
+            }
+        }
+
+        char[] c = s.substring(intLength * 4).toCharArray();
+        long mult = 1;
+        for (int k = 0; k < c.length; k++) {
+            sum += c[k] * mult;
+            mult *= 256;
+        }
+
+        return (int)(Math.abs(sum) % length);
+    }
+
+
+    /**
+     * One side of a benchmark.
+     */
+    private interface Side {
+        /**
+         * Do the timed work.
+         *
+         * @return An answer that both sides must agree on.
+         * @throws Exception
+         */
+        long run() throws Exception;
+    }
+}
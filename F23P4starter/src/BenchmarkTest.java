@@ -0,0 +1,33 @@
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import student.TestCase;
+
+/**
+ * This class was designed to test that the benchmarks run and that both
+ * sides of each agree, on small inputs.
+ *
+ * @author Yu-Kai Lo
+ * @version 1.0
+ */
+public class BenchmarkTest extends TestCase {
+
+    /**
+     * This test tries every benchmark and reads the timings printed.
+     *
+     * @throws Exception
+     */
+    public void testRunAll() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        new Benchmark(new PrintStream(bytes, true)).runAll(4000);
+        String[] lines = bytes.toString().split("\n");
+        assertEquals(5, lines.length);
+        assertTrue(lines[0].startsWith("union/find, balanced, 2048 nodes: "));
+        assertTrue(lines[1].startsWith("union/find, chain, 2048 nodes: "));
+        assertTrue(lines[2].startsWith("Hash.h, 400 keys x 10: "));
+        assertTrue(lines[3].startsWith("search, 4000 on 1 vs 4 threads: "));
+        assertTrue(lines[4].startsWith("Floyd, 2 vertices: "));
+        for (String line : lines) {
+            assertTrue(line.endsWith(" ms after"));
+        }
+    }
+}
@@ -0,0 +1,374 @@
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.zip.CRC32;
+
+/**
+ * The CommandLog class is an append only write-ahead log of the commands
+ * that change the database. Each command is one record: its payload length,
+ * the CRC32 of the payload, and the payload, an operation byte followed by
+ * its strings. Records are gathered in memory and written and forced to
+ * disk together once syncEvery of them are waiting, so one fsync covers a
+ * whole group. A syncEvery of 1 makes every command durable before it
+ * runs.
+ * 
+ * Opening a log replays its records in order. A crash can leave the last
+ * record half written; replay stops at the first record that is short or
+ * fails its checksum, and the file is cut back to the end of the last good
+ * one before anything more is appended. A record that fails to apply stops
+ * the replay with an error instead, since skipping it would lose data.
+ * 
+ * Each log file has a random id in its header, so a snapshot can record
+ * which log it was saved from and how many of that log's records it
+ * already holds. Replaying a load of that snapshot from the same log then
+ * skips those records.
+ *
+ * @author Yu-Kai Lo
+ * @version 1.0
+ */
+public class CommandLog implements Closeable {
+    /**
+     * The first four bytes of a log, "P4WL".
+     */
+    static final int MAGIC = 0x5034574C;
+
+    /**
+     * The format version written, and the newest one that can be read.
+     * Version 1 logs have no id.
+     */
+    static final int VERSION = 2;
+
+    /** An insert of an artist and a song. */
+    static final byte INSERT = 1;
+    /** A removal of an artist. */
+    static final byte REMOVE_ARTIST = 2;
+    /** A removal of a song. */
+    static final byte REMOVE_SONG = 3;
+    /** A load of a snapshot, which replaces everything before it. */
+    static final byte LOAD = 4;
+
+    private static final int HEADER_BYTES = 16;
+    private static final int FRAME_BYTES = 8;
+
+    /**
+     * The receiver of each record a log replays.
+     */
+    interface Replayer {
+        /**
+         * Apply one record.
+         * 
+         * @param op
+         *            The operation.
+         * @param first
+         *            The first string: the artist, song or snapshot.
+         * @param second
+         *            The song of an insert, or null.
+         * @throws Exception
+         */
+        void replay(byte op, String first, String second) throws Exception;
+    }
+
+    private String path;
+    private FileChannel channel;
+    private long id;
+    private int syncEvery;
+    private int waiting; // Records in the buffer
+    private int replayed;
+    private long records; // Records in the log, waiting ones included
+    private long skipTo; // Records before this are not replayed
+    private ByteArrayOutputStream buffer;
+    private ByteArrayOutputStream payload;
+    private DataOutputStream payloadOut;
+    private CRC32 crc;
+
+    /**
+     * Open a log, creating it if needed, and replay the records it holds.
+     * 
+     * @param path
+     *            The log file.
+     * @param syncEvery
+     *            The number of records written and forced together.
+     * @param replayer
+     *            The receiver of the records already in the log.
+     * @throws Exception
+     *             If the file is not a log or a record cannot be replayed.
+     */
+    public CommandLog(String path, int syncEvery, Replayer replayer)
+        throws Exception {
+        this(path, syncEvery);
+        replay(replayer);
+    }
+
+
+    /**
+     * Open a log, creating it if needed, without replaying it yet. Nothing
+     * can be appended until it has been replayed.
+     * 
+     * @param path
+     *            The log file.
+     * @param syncEvery
+     *            The number of records written and forced together.
+     * @throws IOException
+     *             If the file is not a log.
+     */
+    public CommandLog(String path, int syncEvery) throws IOException {
+        this.path = path;
+        this.syncEvery = Math.max(1, syncEvery);
+        buffer = new ByteArrayOutputStream(1 << 16);
+        payload = new ByteArrayOutputStream(256);
+        payloadOut = new DataOutputStream(payload);
+        crc = new CRC32();
+        channel = FileChannel.open(new File(path).toPath(),
+            StandardOpenOption.CREATE, StandardOpenOption.READ,
+            StandardOpenOption.WRITE);
+        if (channel.size() == 0) {
+            id = newId();
+            channel.write(header(id), 0);
+            channel.force(false);
+        }
+    }
+
+
+    /**
+     * Make a random id for a new log file. Zero is left for the logs of
+     * version 1, which have none.
+     * 
+     * @return The id.
+     */
+    private static long newId() {
+        long next = 0;
+        while (next == 0) {
+            next = ThreadLocalRandom.current().nextLong();
+        }
+        return next;
+    }
+
+
+    /**
+     * Build the header of a new log file.
+     * 
+     * @param logId
+     *            The id of the log.
+     * @return The header, ready to write.
+     */
+    private static ByteBuffer header(long logId) {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        header.putInt(MAGIC).putInt(VERSION).putLong(logId).flip();
+        return header;
+    }
+
+
+    /**
+     * Read every good record and hand it to a replayer, then cut the file
+     * back to the end of the last good one.
+     * 
+     * @param replayer
+     *            The receiver of the records.
+     * @throws Exception
+     *             If the file is not a log or a record cannot be replayed.
+     */
+    public void replay(Replayer replayer) throws Exception {
+        long length = channel.size();
+        ByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+            length);
+        if (length < 8 || in.getInt() != MAGIC) {
+            channel.close();
+            throw new IOException("not a command log");
+        }
+        int version = in.getInt();
+        if (version > VERSION) {
+            channel.close();
+            throw new IOException("command log version is too new");
+        }
+        if (version > 1) {
+            if (in.remaining() < 8) {
+                channel.close();
+                throw new IOException("not a command log");
+            }
+            id = in.getLong();
+        }
+        while (in.remaining() >= FRAME_BYTES) {
+            int start = in.position();
+            int size = in.getInt();
+            int sum = in.getInt();
+            if (size < 1 || size > in.remaining()) {
+                in.position(start);
+                break;
+            }
+            ByteBuffer record = in.slice();
+            record.limit(size);
+            crc.reset();
+            crc.update(record.duplicate());
+            if ((int)crc.getValue() != sum) {
+                in.position(start);
+                break;
+            }
+            in.position(in.position() + size);
+            byte op = record.get();
+            String first = Snapshot.readString(record);
+            String second = Snapshot.readString(record);
+            if (records >= skipTo) {
+                try {
+                    replayer.replay(op, first, second);
+                }
+                catch (Exception e) {
+                    channel.close();
+                    throw new IOException("record " + records
+                        + " could not be replayed: " + e.getMessage(), e);
+                }
+                replayed++;
+            }
+            records++;
+        }
+        channel.truncate(in.position());
+        channel.position(in.position());
+    }
+
+
+    /**
+     * Return the id of the log file, which a snapshot saved while it is
+     * open records along with position().
+     * 
+     * @return The id, or 0 for a version 1 log.
+     */
+    public long id() {
+        return id;
+    }
+
+
+    /**
+     * Return the number of records in the log, counting those not yet
+     * forced to disk.
+     * 
+     * @return The record count.
+     */
+    public long position() {
+        return records;
+    }
+
+
+    /**
+     * Skip the records before a position while replaying, as a snapshot
+     * that was just loaded already holds them.
+     * 
+     * @param position
+     *            The number of records from the start of the log to skip.
+     */
+    public void skipTo(long position) {
+        skipTo = Math.max(skipTo, position);
+    }
+
+
+    /**
+     * Return the number of records replayed when the log was opened.
+     * 
+     * @return The record count.
+     */
+    public int replayedCount() {
+        return replayed;
+    }
+
+
+    /**
+     * Add a record. It is written and forced along with the others of its
+     * group once syncEvery records are waiting.
+     * 
+     * @param op
+     *            The operation.
+     * @param first
+     *            The first string.
+     * @param second
+     *            The second string, or null.
+     * @throws IOException
+     */
+    public void append(byte op, String first, String second)
+        throws IOException {
+        payload.reset();
+        payloadOut.writeByte(op);
+        Snapshot.writeString(payloadOut, first);
+        Snapshot.writeString(payloadOut, second);
+        crc.reset();
+        crc.update(payload.toByteArray(), 0, payload.size());
+        DataOutputStream frame = new DataOutputStream(buffer);
+        frame.writeInt(payload.size());
+        frame.writeInt((int)crc.getValue());
+        payload.writeTo(buffer);
+        waiting++;
+        records++;
+        if (waiting >= syncEvery) {
+            sync();
+        }
+    }
+
+
+    /**
+     * Write every waiting record and force them to disk.
+     * 
+     * @throws IOException
+     */
+    public void sync() throws IOException {
+        if (waiting == 0) {
+            return;
+        }
+        ByteBuffer out = ByteBuffer.wrap(buffer.toByteArray());
+        while (out.hasRemaining()) {
+            channel.write(out);
+        }
+        channel.force(false);
+        buffer.reset();
+        waiting = 0;
+    }
+
+
+    /**
+     * Drop every record, after a snapshot has made them redundant, and
+     * start again with one record. The new log is written beside the old
+     * one and moved over it, so a crash leaves one or the other whole. It
+     * gets a new id, so the snapshot's record count only applies to the
+     * old one.
+     * 
+     * @param op
+     *            The operation of the first record.
+     * @param first
+     *            Its first string.
+     * @throws IOException
+     */
+    public void restart(byte op, String first) throws IOException {
+        buffer.reset();
+        waiting = 0;
+        records = 0;
+        File temp = new File(path + ".tmp");
+        FileChannel fresh = FileChannel.open(temp.toPath(),
+            StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+            StandardOpenOption.WRITE);
+        id = newId();
+        fresh.write(header(id));
+        FileChannel old = channel;
+        channel = fresh;
+        append(op, first, null);
+        sync();
+        Files.move(temp.toPath(), new File(path).toPath(),
+            StandardCopyOption.REPLACE_EXISTING,
+            StandardCopyOption.ATOMIC_MOVE);
+        old.close();
+    }
+
+
+    @Override
+    public void close() throws IOException {
+        try {
+            sync();
+        }
+        finally {
+            channel.close();
+        }
+    }
+}
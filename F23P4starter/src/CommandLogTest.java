@@ -0,0 +1,276 @@
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import student.TestCase;
+
+/**
+ * This class was designed to test the write-ahead command log.
+ *
+ * @author Yu-Kai Lo
+ * @version 1.0
+ */
+public class CommandLogTest extends TestCase {
+    private File path;
+    private List<String> replayed;
+
+    /**
+     * Sets up the tests that follow.
+     * 
+     * @throws IOException
+     */
+    public void setUp() throws IOException {
+        path = File.createTempFile("commands", ".log");
+        path.delete();
+        path.deleteOnExit();
+        replayed = new ArrayList<String>();
+    }
+
+
+    /**
+     * Open the log, keeping every replayed record as a line.
+     * 
+     * @param syncEvery
+     *            The number of records forced together.
+     * @return The log.
+     * @throws Exception
+     */
+    private CommandLog open(int syncEvery) throws Exception {
+        return new CommandLog(path.getPath(), syncEvery, (op, a, b) -> {
+            replayed.add(op + " " + a + " " + b);
+        });
+    }
+
+
+    /**
+     * Return everything a database prints about its tables and graph.
+     * 
+     * @param database
+     *            The database.
+     * @param events
+     *            The sink the database writes to.
+     * @return The printed lines.
+     */
+    private String printAll(Database database, EventSink events) {
+        int from = events.size();
+        database.printArtist();
+        database.printSong();
+        database.printGraph();
+        StringBuilder builder = new StringBuilder();
+        for (int i = from; i < events.size(); i++) {
+            builder.append(events.line(i)).append('\n');
+        }
+        return builder.toString();
+    }
+
+
+    /**
+     * This test tries to write records in groups and read back only the
+     * groups that were forced before a crash.
+     * 
+     * @throws Exception
+     */
+    public void testGroups() throws Exception {
+        CommandLog log = open(3);
+        for (int i = 0; i < 7; i++) {
+            log.append(CommandLog.INSERT, "Artist " + i, "Song " + i);
+        }
+        // A second reader sees the file as a crash would leave it
+        CommandLog crashed = open(1);
+        crashed.close();
+        assertEquals(6, replayed.size());
+        assertEquals("1 Artist 0 Song 0", replayed.get(0));
+        log.close();
+        replayed.clear();
+        log = open(1);
+        assertEquals(7, log.replayedCount());
+        log.append(CommandLog.REMOVE_SONG, "Song 1", null);
+        log.close();
+        replayed.clear();
+        open(1).close();
+        assertEquals("3 Song 1 null", replayed.get(7));
+    }
+
+
+    /**
+     * This test tries to replay a log whose last record was cut short, and
+     * to append after it.
+     * 
+     * @throws Exception
+     */
+    public void testTornTail() throws Exception {
+        CommandLog log = open(1);
+        log.append(CommandLog.INSERT, "A", "B");
+        log.append(CommandLog.INSERT, "C", "D");
+        log.close();
+        long good = path.length();
+        try (FileOutputStream out = new FileOutputStream(path, true)) {
+            out.write(new byte[] { 0, 0, 0, 40, 1, 2, 3, 4, 1 });
+        }
+        log = open(1);
+        assertEquals(2, log.replayedCount());
+        assertEquals(good, path.length());
+        log.append(CommandLog.REMOVE_ARTIST, "A", null);
+        log.close();
+        replayed.clear();
+        open(1).close();
+        assertEquals(3, replayed.size());
+
+        try (FileOutputStream out = new FileOutputStream(path)) {
+            out.write(new byte[] { 1, 2, 3, 4, 5, 6, 7, 8 });
+        }
+        Exception thrown = null;
+        try {
+            open(1);
+        }
+        catch (IOException e) {
+            thrown = e;
+        }
+        assertNotNull(thrown);
+    }
+
+
+    /**
+     * This test tries to rebuild a database from its log alone, across a
+     * snapshot that cuts the log back.
+     * 
+     * @throws Exception
+     */
+    public void testRecovery() throws Exception {
+        File snapshot = File.createTempFile("snapshot", ".p4db");
+        snapshot.deleteOnExit();
+        EventSink events = new EventSink();
+        Database database = new Database(10, events);
+        database.openLog(path.getPath(), 4);
+        for (int i = 0; i < 50; i++) {
+            database.insert("Artist " + i % 7, "Song " + i % 11);
+            if (i % 5 == 0) {
+                database.removeSong("Song " + i % 3);
+            }
+        }
+        database.save(snapshot.getPath());
+        long checkpoint = path.length();
+        database.removeArtist("Artist 3");
+        database.insert("Artist 9", "Song 0");
+        database.closeLog();
+        assertTrue(path.length() > checkpoint);
+        String expected = printAll(database, events);
+
+        EventSink recoveredEvents = new EventSink();
+        Database recovered = new Database(10, recoveredEvents);
+        recovered.openLog(path.getPath(), 4);
+        assertEquals(1, recoveredEvents.size());
+        assertEquals("|" + path.getPath() + "| replayed 3 commands.",
+            recoveredEvents.line(0));
+        assertEquals(expected, printAll(recovered, recoveredEvents));
+        recovered.closeLog();
+    }
+
+
+    /**
+     * This test tries a crash after a snapshot replaced the old one but
+     * before the log was cut back. The snapshot already holds the commands
+     * in the log after its load, so they must not be applied again.
+     * 
+     * @throws Exception
+     */
+    public void testCrashBeforeCut() throws Exception {
+        File snapshot = File.createTempFile("snapshot", ".p4db");
+        snapshot.deleteOnExit();
+        EventSink events = new EventSink();
+        Database database = new Database(10, events);
+        database.openLog(path.getPath(), 1);
+        database.insert("Artist 1", "Song 1");
+        database.save(snapshot.getPath());
+        database.insert("Artist 2", "Song 1");
+        database.removeArtist("Artist 1");
+        database.insert("Artist 1", "Song 2");
+        byte[] uncut = java.nio.file.Files.readAllBytes(path.toPath());
+        database.save(snapshot.getPath());
+        database.closeLog();
+        String expected = printAll(database, events);
+        java.nio.file.Files.write(path.toPath(), uncut);
+
+        EventSink recoveredEvents = new EventSink();
+        Database recovered = new Database(10, recoveredEvents);
+        assertEquals(1, recovered.openLog(path.getPath(), 1));
+        assertEquals(expected, printAll(recovered, recoveredEvents));
+        recovered.insert("Artist 3", "Song 3");
+        recovered.closeLog();
+
+        EventSink againEvents = new EventSink();
+        Database again = new Database(10, againEvents);
+        assertEquals(2, again.openLog(path.getPath(), 1));
+        recovered.printArtist();
+        again.printArtist();
+        assertEquals(recoveredEvents.line(recoveredEvents.size() - 1),
+            againEvents.line(againEvents.size() - 1));
+    }
+
+
+    /**
+     * This test tries to replay a log whose snapshot is gone, which must
+     * fail rather than go on from an empty database.
+     * 
+     * @throws Exception
+     */
+    public void testMissingSnapshot() throws Exception {
+        File snapshot = File.createTempFile("snapshot", ".p4db");
+        snapshot.deleteOnExit();
+        Database database = new Database(10, new EventSink());
+        database.openLog(path.getPath(), 1);
+        database.insert("Artist 1", "Song 1");
+        database.save(snapshot.getPath());
+        database.insert("Artist 2", "Song 2");
+        database.closeLog();
+        snapshot.delete();
+
+        Exception thrown = null;
+        try {
+            new Database(10, new EventSink()).openLog(path.getPath(), 1);
+        }
+        catch (IOException e) {
+            thrown = e;
+        }
+        assertNotNull(thrown);
+        assertTrue(thrown.getMessage().startsWith(
+            "record 0 could not be replayed"));
+    }
+
+
+    /**
+     * This test tries -load with -log: the snapshot starts an empty log,
+     * but is not loaded over a log that already holds commands.
+     * 
+     * @throws Exception
+     */
+    public void testLoadWithLog() throws Exception {
+        File snapshot = File.createTempFile("snapshot", ".p4db");
+        snapshot.deleteOnExit();
+        Database database = new Database(10, new EventSink());
+        database.insert("A", "B");
+        database.save(snapshot.getPath());
+        File commands = File.createTempFile("commands", ".txt");
+        commands.deleteOnExit();
+        java.nio.file.Files.write(commands.toPath(), ("insert C<SEP>D\n"
+            + "print artist\n").getBytes());
+        String[] args = { "10", commands.getPath(), "-log", path.getPath(),
+            "-load", snapshot.getPath() };
+        GraphProject.main(args);
+        String output = systemOut().getHistory();
+        assertTrue(output.contains("|" + snapshot.getPath()
+            + "| is loaded.\n"));
+        assertTrue(output.endsWith("total artists: 2\n"));
+
+        java.nio.file.Files.write(commands.toPath(), "print artist\n"
+            .getBytes());
+        systemOut().clearHistory();
+        GraphProject.main(args);
+        output = systemOut().getHistory();
+        assertTrue(output.contains("|" + snapshot.getPath()
+            + "| is not loaded: |" + path.getPath()
+            + "| already holds the database.\n"));
+        assertTrue(output.endsWith("total artists: 2\n"));
+    }
+}
@@ -0,0 +1,332 @@
+import java.io.Closeable;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.InputMismatchException;
+import java.util.NoSuchElementException;
+
+/**
+ * The CommandReader class reads a command file through a FileChannel into a
+ * reusable buffer and hands out tokens and lines the way Scanner's next()
+ * and nextLine() do. Whitespace, line ends and the {@code <SEP>} delimiter
+ * are found by scanning bytes, so no regex is built and only the strings
+ * that are returned get allocated.
+ *
+ * @author Yu-Kai Lo
+ * @version 1.0
+ */
+public class CommandReader implements Closeable {
+    /**
+     * The delimiter between the artist and the song of an insert.
+     */
+    private static final byte[] SEP = { '<', 'S', 'E', 'P', '>' };
+
+    private FileChannel channel;
+    private ByteBuffer buffer;
+    private byte[] buf;
+    private int pos;
+    private int limit;
+    private byte[] line;
+    private Charset charset;
+
+    /**
+     * Open a command file for reading.
+     * 
+     * @param inputFile
+     *            The file to read.
+     * @throws IOException
+     *             If the file cannot be opened.
+     */
+    public CommandReader(String inputFile) throws IOException {
+        channel = new FileInputStream(inputFile).getChannel();
+        buf = new byte[1 << 16];
+        buffer = ByteBuffer.wrap(buf);
+        line = new byte[256];
+        charset = Charset.defaultCharset();
+    }
+
+
+    /**
+     * Move any unread bytes to the front of the buffer and read more after
+     * them.
+     * 
+     * @return False if the file has no more bytes.
+     * @throws IOException
+     */
+    private boolean fill() throws IOException {
+        if (pos > 0) {
+            System.arraycopy(buf, pos, buf, 0, limit - pos);
+            limit -= pos;
+            pos = 0;
+        }
+        buffer.clear();
+        buffer.position(limit);
+        int read = channel.read(buffer);
+        if (read <= 0) {
+            return false;
+        }
+        limit += read;
+        return true;
+    }
+
+
+    /**
+     * Check whether a byte is whitespace as Character.isWhitespace sees it.
+     * 
+     * @param b
+     *            The byte.
+     * @return True for whitespace.
+     */
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || (b >= '\t' && b <= '\r') || (b >= 0x1C
+            && b <= 0x1F);
+    }
+
+
+    /**
+     * Returns true if there is another token in the file.
+     * 
+     * @return If there is another token.
+     * @throws IOException
+     */
+    public boolean hasNext() throws IOException {
+        while (true) {
+            while (pos < limit) {
+                if (!isWhitespace(buf[pos])) {
+                    return true;
+                }
+                pos++;
+            }
+            if (!fill()) {
+                return false;
+            }
+        }
+    }
+
+
+    /**
+     * Return the next whitespace separated token.
+     * 
+     * @return The token.
+     * @throws IOException
+     */
+    public String next() throws IOException {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        int start = pos;
+        while (true) {
+            while (pos < limit && !isWhitespace(buf[pos])) {
+                pos++;
+            }
+            if (pos < limit || pos - start == buf.length) {
+                break;
+            }
+            // Keep the partial token and read more after it
+            int read = pos - start;
+            pos = start;
+            boolean more = fill();
+            start = 0;
+            pos = read;
+            if (!more) {
+                break;
+            }
+        }
+        return new String(buf, start, pos - start, charset);
+    }
+
+
+    /**
+     * Read the rest of the current line into the line buffer and skip its
+     * line end.
+     * 
+     * @return The number of bytes in the line.
+     * @throws IOException
+     */
+    private int readLine() throws IOException {
+        int length = 0;
+        boolean found = false;
+        while (true) {
+            int start = pos;
+            while (pos < limit && buf[pos] != '\n' && buf[pos] != '\r') {
+                pos++;
+            }
+            if (length + pos - start > line.length) {
+                byte[] bigger = new byte[Math.max(line.length * 2, length
+                    + pos - start)];
+                System.arraycopy(line, 0, bigger, 0, length);
+                line = bigger;
+            }
+            System.arraycopy(buf, start, line, length, pos - start);
+            length += pos - start;
+            found = found || pos > start;
+            if (pos < limit) {
+                break;
+            }
+            if (!fill()) {
+                if (!found) {
+                    throw new NoSuchElementException("No line found");
+                }
+                return length;
+            }
+        }
+        boolean carriageReturn = buf[pos++] == '\r';
+        if (carriageReturn && (pos < limit || fill()) && buf[pos] == '\n') {
+            pos++;
+        }
+        return length;
+    }
+
+
+    /**
+     * Return the rest of the current line, without its line end.
+     * 
+     * @return The line.
+     * @throws IOException
+     */
+    public String nextLine() throws IOException {
+        int length = readLine();
+        return new String(line, 0, length, charset);
+    }
+
+
+    /**
+     * Return the rest of the current line split at {@code <SEP>}, each half
+     * trimmed. This matches nextLine().split("<SEP>") followed by trim() on
+     * the first two parts.
+     * 
+     * @return The two halves of the line.
+     * @throws IOException
+     */
+    public String[] nextPair() throws IOException {
+        int length = readLine();
+        return pair(line, length, charset);
+    }
+
+
+    /**
+     * Return the rest of the current line as raw bytes, without its line
+     * end, so that it can be split by pair() on another thread.
+     * 
+     * @return The bytes of the line.
+     * @throws IOException
+     */
+    public byte[] nextLineBytes() throws IOException {
+        int length = readLine();
+        return Arrays.copyOf(line, length);
+    }
+
+
+    /**
+     * Split a line at {@code <SEP>} and trim each half, as nextPair does.
+     * 
+     * @param line
+     *            The bytes of the line.
+     * @param length
+     *            The number of bytes in the line.
+     * @param charset
+     *            The charset of the bytes.
+     * @return The two halves of the line.
+     */
+    static String[] pair(byte[] line, int length, Charset charset) {
+        int first = indexOfSep(line, 0, length);
+        int second = first < 0
+            ? -1
+            : indexOfSep(line, first + SEP.length, length);
+        int end = second < 0 ? length : second;
+        if (first < 0 || (end == first + SEP.length && !hasContentAfter(line,
+            end, length))) {
+            throw new InputMismatchException("|" + new String(line, 0, length,
+                charset) + "| is not an artist and song separated by <SEP>");
+        }
+        String[] pair = new String[2];
+        pair[0] = trimmed(line, 0, first, charset);
+        pair[1] = trimmed(line, first + SEP.length, end, charset);
+        return pair;
+    }
+
+
+    /**
+     * Find the next {@code <SEP>} in a line.
+     * 
+     * @param line
+     *            The bytes of the line.
+     * @param from
+     *            The position to start at.
+     * @param length
+     *            The number of bytes in the line.
+     * @return The position of the delimiter, or -1 if there is none.
+     */
+    private static int indexOfSep(byte[] line, int from, int length) {
+        for (int i = from; i + SEP.length <= length; i++) {
+            int k = 0;
+            while (k < SEP.length && line[i + k] == SEP[k]) {
+                k++;
+            }
+            if (k == SEP.length) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+
+    /**
+     * Check whether anything but further delimiters follows a position.
+     * String.split drops trailing empty parts, so a line ending in
+     * delimiters has no second part.
+     * 
+     * @param line
+     *            The bytes of the line.
+     * @param from
+     *            The position to start at.
+     * @param length
+     *            The number of bytes in the line.
+     * @return True if a non-empty part follows.
+     */
+    private static boolean hasContentAfter(byte[] line, int from,
+        int length) {
+        while (from < length) {
+            if (indexOfSep(line, from, length) != from) {
+                return true;
+            }
+            from += SEP.length;
+        }
+        return false;
+    }
+
+
+    /**
+     * Decode part of a line without its leading and trailing whitespace,
+     * as String.trim does.
+     * 
+     * @param line
+     *            The bytes of the line.
+     * @param start
+     *            The first byte.
+     * @param end
+     *            One past the last byte.
+     * @param charset
+     *            The charset of the bytes.
+     * @return The trimmed string.
+     */
+    private static String trimmed(byte[] line, int start, int end,
+        Charset charset) {
+        while (start < end && (line[start] & 0xFF) <= ' ') {
+            start++;
+        }
+        while (end > start && (line[end - 1] & 0xFF) <= ' ') {
+            end--;
+        }
+        return new String(line, start, end - start, charset);
+    }
+
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,112 @@
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.NoSuchElementException;
+import student.TestCase;
+
+/**
+ * This class was designed to test the command reader.
+ *
+ * @author Yu-Kai Lo
+ * @version 1.0
+ */
+public class CommandReaderTest extends TestCase {
+
+    /**
+     * Write a temporary command file.
+     * 
+     * @param contents
+     *            The file contents.
+     * @return The reader over the file.
+     * @throws Exception
+     */
+    private CommandReader open(String contents) throws Exception {
+        File input = File.createTempFile("P4reader", ".txt");
+        input.deleteOnExit();
+        FileOutputStream out = new FileOutputStream(input);
+        out.write(contents.getBytes());
+        out.close();
+        return new CommandReader(input.getPath());
+    }
+
+
+    /**
+     * This test tries to read tokens and lines across line ends.
+     * 
+     * @throws Exception
+     */
+    public void testTokens() throws Exception {
+        CommandReader reader = open("  print\r\n\n song \r\nremove artist"
+            + "  Ma Rainey \rdebug");
+        assertEquals("print", reader.next());
+        assertEquals("song", reader.next());
+        assertEquals(" ", reader.nextLine());
+        assertEquals("remove", reader.next());
+        assertEquals("artist", reader.next());
+        assertEquals("  Ma Rainey ", reader.nextLine());
+        assertTrue(reader.hasNext());
+        assertEquals("debug", reader.next());
+        assertFalse(reader.hasNext());
+        Exception thrown = null;
+        try {
+            reader.nextLine();
+        }
+        catch (NoSuchElementException e) {
+            thrown = e;
+        }
+        assertNotNull(thrown);
+        reader.close();
+    }
+
+
+    /**
+     * This test tries to split lines at the separator as split() would.
+     * 
+     * @throws Exception
+     */
+    public void testPairs() throws Exception {
+        CommandReader reader = open(" Blind Lemon <SEP> Long Blues \n"
+            + "a<SEP><SEP>b\n<SEP>c<SEP>d\na<SEP><SEP>\n");
+        String[] pair = reader.nextPair();
+        assertEquals("Blind Lemon", pair[0]);
+        assertEquals("Long Blues", pair[1]);
+        pair = reader.nextPair();
+        assertEquals("a", pair[0]);
+        assertEquals("", pair[1]);
+        pair = reader.nextPair();
+        assertEquals("", pair[0]);
+        assertEquals("c", pair[1]);
+        Exception thrown = null;
+        try {
+            reader.nextPair();
+        }
+        catch (Exception e) {
+            thrown = e;
+        }
+        assertNotNull(thrown);
+        reader.close();
+    }
+
+
+    /**
+     * This test tries to split a line longer than the reader's first line
+     * buffer, both directly and from raw bytes.
+     * 
+     * @throws Exception
+     */
+    public void testLongPair() throws Exception {
+        StringBuilder artist = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            artist.append("Long ");
+        }
+        CommandReader reader = open(artist + "<SEP>Song\n" + artist
+            + "<SEP>Song\n");
+        byte[] line = reader.nextLineBytes();
+        String[] pair = CommandReader.pair(line, line.length,
+            java.nio.charset.Charset.defaultCharset());
+        assertEquals(artist.toString().trim(), pair[0]);
+        assertEquals("Song", pair[1]);
+        pair = reader.nextPair();
+        assertEquals(artist.toString().trim(), pair[0]);
+        reader.close();
+    }
+}
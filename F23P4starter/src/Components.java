@@ -0,0 +1,451 @@
+import java.util.Arrays;
+
+/**
+ * The connected components of a GraphL, kept up to date as nodes and edges
+ * come and go, so that printing them does not rebuild a ParPtrTree over the
+ * whole graph. New edges are merged into a parent pointer tree right away.
+ * Removing a node may split its component, which union/find cannot undo,
+ * so the removed node is only marked stale and its component is found
+ * again from its own members the next time the components are read.
+ *
+ * Every tree also links its nodes into a ring through next, which is what
+ * makes that possible: joining two trees swaps the next pointers of their
+ * roots, splicing the two rings into one. Sizes count only nodes with a
+ * value, and a histogram of the sizes gives the count and the largest
+ * size at once.
+ *
+ * Each root also keeps its component's diameter once searched. Any change
+ * to a component clears only its own. The figures print graph shows are
+ * kept with the graph version they were found at, so printing an
+ * unchanged graph again reads no component at all.
+ *
+ * @author Yu-Kai Lo
+ * @version 1.0
+ */
+public class Components {
+    private GraphL graph;
+    private int[] parent; // -1 at the roots
+    private int[] size; // Nodes with a value, only valid at the roots
+    private int[] next; // The next node in the same tree's ring
+    private boolean[] stale; // Removed, but still linked into its old tree
+    private int[] histogram; // The number of components of each size
+    private int count;
+    private int largest;
+    private int[] removed; // Removed nodes whose trees are not redone yet
+    private int removedCount;
+    private int[] members;
+    private int[] diameters; // -1 until searched, only valid at the roots
+    private long statsVersion;
+    private int[] stats; // Component count, largest size and diameter
+
+    /**
+     * Find the components of a graph.
+     *
+     * @param graph
+     *            The graph to follow.
+     */
+    Components(GraphL graph) {
+        this.graph = graph;
+        rebuild();
+    }
+
+
+    /**
+     * Forget every component and find them again from the whole graph, as
+     * after its nodes are renumbered.
+     */
+    public void rebuild() {
+        int n = graph.nodeCount();
+        parent = new int[n];
+        size = new int[n];
+        next = new int[n];
+        stale = new boolean[n];
+        diameters = new int[n];
+        statsVersion = -1;
+        histogram = new int[n + 1];
+        count = 0;
+        largest = 0;
+        removed = new int[16];
+        removedCount = 0;
+        members = new int[16];
+        for (int v = 0; v < n; v++) {
+            reset(v);
+        }
+        for (int v = 0; v < n; v++) {
+            if (graph.getValue(v) != null) {
+                addNode(v);
+            }
+        }
+        for (int v = 0; v < n; v++) {
+            connect(v);
+        }
+    }
+
+
+    /**
+     * Start a component for a node that was just given a value. A removed
+     * node being reused first has its old tree redone, which already
+     * counts it in, as it has a value again.
+     *
+     * @param v
+     *            The node.
+     */
+    public void addNode(int v) {
+        if (v >= parent.length) {
+            grow(v + 1);
+        }
+        if (stale[v]) {
+            redo(find(v));
+            return;
+        }
+        size[v] = 1;
+        tally(1, 1);
+    }
+
+
+    /**
+     * Merge the components at the two ends of a new edge. The smaller tree
+     * is hung under the root of the larger one.
+     *
+     * @param a
+     *            The first node.
+     * @param b
+     *            The second node.
+     */
+    public void union(int a, int b) {
+        int root1 = find(a);
+        int root2 = find(b);
+        if (root1 == root2) {
+            diameters[root1] = -1;
+            return;
+        }
+        if (size[root1] > size[root2]) {
+            int temp = root1;
+            root1 = root2;
+            root2 = temp;
+        }
+        // Counting the merged size in first keeps largest from sinking
+        tally(size[root1] + size[root2], 1);
+        tally(size[root1], -1);
+        tally(size[root2], -1);
+        parent[root1] = root2;
+        size[root2] += size[root1];
+        diameters[root2] = -1;
+        int temp = next[root1];
+        next[root1] = next[root2];
+        next[root2] = temp;
+    }
+
+
+    /**
+     * Note that a node and all its edges were removed from the graph. Its
+     * component is found again from its members when next read.
+     *
+     * @param v
+     *            The node.
+     */
+    public void removeNode(int v) {
+        stale[v] = true;
+        if (removedCount == removed.length) {
+            removed = Arrays.copyOf(removed, removedCount * 2);
+        }
+        removed[removedCount++] = v;
+    }
+
+
+    /**
+     * Return the number of components.
+     *
+     * @return The number of components.
+     */
+    public int componentCount() {
+        flush();
+        return count;
+    }
+
+
+    /**
+     * Return the number of nodes in the largest component.
+     *
+     * @return The largest component size.
+     */
+    public int largestSize() {
+        flush();
+        return largest;
+    }
+
+
+    /**
+     * Return the number of nodes in a node's component.
+     *
+     * @param v
+     *            The node.
+     * @return The size of the component holding the node.
+     */
+    public int componentSize(int v) {
+        flush();
+        return size[find(v)];
+    }
+
+
+    /**
+     * Return the nodes with a value in a node's component, such as for
+     * Floyd to find the shortest paths within it.
+     *
+     * @param v
+     *            The node.
+     * @return The nodes, sorted.
+     */
+    public int[] members(int v) {
+        flush();
+        int k = collect(find(v));
+        int live = 0;
+        for (int i = 0; i < k; i++) {
+            if (graph.getValue(members[i]) != null) {
+                members[live++] = members[i];
+            }
+        }
+        int[] found = Arrays.copyOf(members, live);
+        Arrays.sort(found);
+        return found;
+    }
+
+
+    /**
+     * Return the largest diameter of the components with the most nodes.
+     * Only those components are searched, each over its own members, and
+     * only if it changed since it was last searched.
+     *
+     * @return The diameter, or 0 if the graph has no nodes.
+     */
+    public int largestDiameter() {
+        flush();
+        int found = 0;
+        for (int v = 0; v < parent.length && largest > 0; v++) {
+            if (parent[v] == -1 && size[v] == largest) {
+                if (diameters[v] < 0) {
+                    diameters[v] = diameter(v);
+                }
+                found = Math.max(found, diameters[v]);
+            }
+        }
+        return found;
+    }
+
+
+    /**
+     * Return the figures print graph shows. They are worked out again only
+     * if the graph changed since the last call; otherwise the same array
+     * is returned, which must not be changed.
+     *
+     * @return The number of components, the size of the largest and its
+     *         diameter.
+     */
+    int[] stats() {
+        if (statsVersion != graph.version()) {
+            stats = new int[] { componentCount(), largestSize(),
+                largestDiameter() };
+            statsVersion = graph.version();
+        }
+        return stats;
+    }
+
+
+    /**
+     * Return the root of v's tree. Every node on the way is pointed
+     * directly at the root.
+     *
+     * @param v
+     *            The node.
+     * @return The root.
+     */
+    private int find(int v) {
+        int root = v;
+        while (parent[root] != -1) {
+            root = parent[root];
+        }
+        while (parent[v] != -1 && parent[v] != root) {
+            int up = parent[v];
+            parent[v] = root;
+            v = up;
+        }
+        return root;
+    }
+
+
+    /**
+     * Find the components of removed nodes again.
+     */
+    private void flush() {
+        for (int i = 0; i < removedCount; i++) {
+            if (stale[removed[i]]) {
+                redo(find(removed[i]));
+            }
+        }
+        removedCount = 0;
+    }
+
+
+    /**
+     * Split one tree back into its nodes and merge those with a value along
+     * their edges again. Edges never leave a component, so only the tree's
+     * own members and their edges are visited.
+     *
+     * @param root
+     *            The root of the tree.
+     */
+    private void redo(int root) {
+        int k = collect(root);
+        tally(size[root], -1);
+        for (int i = 0; i < k; i++) {
+            reset(members[i]);
+        }
+        for (int i = 0; i < k; i++) {
+            if (graph.getValue(members[i]) != null) {
+                size[members[i]] = 1;
+                tally(1, 1);
+            }
+        }
+        for (int i = 0; i < k; i++) {
+            connect(members[i]);
+        }
+    }
+
+
+    /**
+     * Merge a node with each of its neighbors.
+     *
+     * @param v
+     *            The node.
+     */
+    private void connect(int v) {
+        if (graph.degree(v) == 0) {
+            return;
+        }
+        int[] adjacent = graph.neighbors(v);
+        for (int i = 0; i < adjacent.length; i++) {
+            union(v, adjacent[i]);
+        }
+    }
+
+
+    /**
+     * Copy every node in a tree's ring into members.
+     *
+     * @param root
+     *            The root of the tree.
+     * @return The number of nodes copied.
+     */
+    private int collect(int root) {
+        int k = 0;
+        int v = root;
+        do {
+            if (k == members.length) {
+                members = Arrays.copyOf(members, k * 2);
+            }
+            members[k++] = v;
+            v = next[v];
+        }
+        while (v != root);
+        return k;
+    }
+
+
+    /**
+     * Find the diameter of one component. Its nodes are numbered densely
+     * from zero in order and their edges copied into arrays of their own.
+     *
+     * @param root
+     *            The root of the component.
+     * @return The diameter of the component.
+     */
+    private int diameter(int root) {
+        int k = collect(root);
+        Arrays.sort(members, 0, k);
+        int[] local = new int[parent.length];
+        int live = 0;
+        int edges = 0;
+        for (int i = 0; i < k; i++) {
+            int v = members[i];
+            if (graph.getValue(v) != null) {
+                local[v] = live;
+                members[live++] = v;
+                edges += graph.degree(v);
+            }
+        }
+
+        int[] subOffsets = new int[live + 1];
+        int[] subTargets = new int[edges];
+        int[] weights = new int[edges];
+        for (int i = 0; i < live; i++) {
+            int from = subOffsets[i];
+            subOffsets[i + 1] = graph.copyEdges(members[i], subTargets,
+                weights, from);
+            for (int e = from; e < subOffsets[i + 1]; e++) {
+                subTargets[e] = local[subTargets[e]];
+            }
+        }
+        return new Diameter(subOffsets, subTargets).fast();
+    }
+
+
+    /**
+     * Make a node a tree of its own, with no value.
+     *
+     * @param v
+     *            The node.
+     */
+    private void reset(int v) {
+        parent[v] = -1;
+        size[v] = 0;
+        next[v] = v;
+        diameters[v] = -1;
+        stale[v] = false;
+    }
+
+
+    /**
+     * Count components of a size in or out of the histogram. Trees with
+     * no value in them are not components.
+     *
+     * @param s
+     *            The component size.
+     * @param delta
+     *            1 to count a component in, -1 to count it out.
+     */
+    private void tally(int s, int delta) {
+        if (s == 0) {
+            return;
+        }
+        histogram[s] += delta;
+        count += delta;
+        if (delta > 0 && s > largest) {
+            largest = s;
+        }
+        while (largest > 0 && histogram[largest] == 0) {
+            largest--;
+        }
+    }
+
+
+    /**
+     * Make room for more nodes.
+     *
+     * @param minSize
+     *            The number of nodes needed.
+     */
+    private void grow(int minSize) {
+        int old = parent.length;
+        int n = Math.max(minSize, old * 2);
+        parent = Arrays.copyOf(parent, n);
+        size = Arrays.copyOf(size, n);
+        next = Arrays.copyOf(next, n);
+        stale = Arrays.copyOf(stale, n);
+        diameters = Arrays.copyOf(diameters, n);
+        histogram = Arrays.copyOf(histogram, n + 1);
+        for (int v = old; v < n; v++) {
+            reset(v);
+        }
+    }
+
+}
@@ -0,0 +1,192 @@
+import java.util.Random;
+import student.TestCase;
+
+/**
+ * This class was designed to test the components kept up to date across
+ * inserts and removes.
+ *
+ * @author Yu-Kai Lo
+ * @version 1.0
+ */
+public class ComponentsTest extends TestCase {
+    private GraphL graph;
+    private Components components;
+
+    /**
+     * Sets up the tests that follow.
+     */
+    public void setUp() {
+        graph = new GraphL();
+        graph.init(4);
+        components = new Components(graph);
+    }
+
+
+    /**
+     * Give a node a value.
+     *
+     * @param v
+     *            The node.
+     */
+    private void add(int v) {
+        graph.ensureNodes(v + 1);
+        graph.setValue(v, String.valueOf(v));
+        components.addNode(v);
+    }
+
+
+    /**
+     * Join two nodes with an edge in both directions.
+     *
+     * @param a
+     *            The first node.
+     * @param b
+     *            The second node.
+     */
+    private void connect(int a, int b) {
+        graph.addEdge(a, b, 1);
+        graph.addEdge(b, a, 1);
+        components.union(a, b);
+    }
+
+
+    /**
+     * Remove a node and its edges.
+     *
+     * @param v
+     *            The node.
+     */
+    private void remove(int v) {
+        graph.removeVertex(v);
+        graph.setValue(v, null);
+        components.removeNode(v);
+    }
+
+
+    /**
+     * Check the components against those found from scratch.
+     */
+    private void check() {
+        EventSink events = new EventSink();
+        new GraphCSR(graph).printGraph(events);
+        EventSink kept = new EventSink();
+        GraphCSR.printComponents(kept, components.componentCount(),
+            components.largestSize(), components.largestDiameter());
+        for (int i = 0; i < 3; i++) {
+            assertEquals(events.line(i), kept.line(i));
+        }
+    }
+
+
+    /**
+     * This test tries to split a path by removing its middle node, and to
+     * reuse the removed node.
+     */
+    public void testSplit() {
+        for (int v = 0; v < 5; v++) {
+            add(v);
+        }
+        connect(0, 1);
+        connect(1, 2);
+        connect(2, 3);
+        connect(3, 4);
+        assertEquals(1, components.componentCount());
+        assertEquals(5, components.largestSize());
+        assertEquals(4, components.largestDiameter());
+
+        remove(2);
+        assertEquals(2, components.componentCount());
+        assertEquals(2, components.largestSize());
+        assertEquals(2, components.componentSize(4));
+        assertEquals(1, components.largestDiameter());
+
+        add(2);
+        connect(2, 0);
+        assertEquals(2, components.componentCount());
+        assertEquals(3, components.componentSize(1));
+        remove(0);
+        remove(4);
+        add(0);
+        assertEquals(4, components.componentCount());
+        assertEquals(1, components.largestSize());
+        check();
+    }
+
+
+    /**
+     * This test tries to close a path into a cycle, an edge inside one
+     * component that must clear its diameter, while another component
+     * keeps its own. The printed figures are only found again once the
+     * graph changes.
+     */
+    public void testDiameterCache() {
+        for (int v = 0; v < 9; v++) {
+            add(v);
+        }
+        for (int v = 1; v < 6; v++) {
+            connect(v - 1, v);
+        }
+        connect(6, 7);
+        connect(7, 8);
+        assertEquals(5, components.largestDiameter());
+        assertEquals(5, components.largestDiameter());
+        connect(6, 8);
+        assertEquals(5, components.largestDiameter());
+        connect(0, 5);
+        assertEquals(3, components.largestDiameter());
+        check();
+
+        int[] first = components.stats();
+        assertSame(first, components.stats());
+        connect(0, 6);
+        int[] changed = components.stats();
+        assertNotSame(first, changed);
+        assertEquals(1, changed[0]);
+        assertEquals(9, changed[1]);
+        assertEquals(5, changed[2]);
+        assertSame(changed, components.stats());
+        remove(8);
+        assertEquals(8, components.stats()[1]);
+        check();
+    }
+
+
+    /**
+     * This test tries random inserts and removes, reusing removed nodes,
+     * against components found from scratch after each step.
+     */
+    public void testRandom() {
+        Random random = new Random(21);
+        boolean[] live = new boolean[300];
+        for (int step = 0; step < 3000; step++) {
+            int a = random.nextInt(live.length);
+            int b = random.nextInt(live.length);
+            if (random.nextInt(8) == 0) {
+                if (live[a]) {
+                    remove(a);
+                    live[a] = false;
+                }
+            }
+            else {
+                if (!live[a]) {
+                    add(a);
+                    live[a] = true;
+                }
+                if (!live[b]) {
+                    add(b);
+                    live[b] = true;
+                }
+                if (a != b && !graph.hasEdge(a, b)) {
+                    connect(a, b);
+                }
+            }
+            if (step % 7 == 0) {
+                check();
+            }
+        }
+        check();
+
+        components.rebuild();
+        check();
+    }
+}
@@ -0,0 +1,435 @@
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * The thread safe Hash table. It probes the same quadratic sequence as Hash,
+ * leaves the same tombstones behind and doubles in one pass as Hash does,
+ * so one thread sees the same table either way.
+ * 
+ * Searches take no locks: they read the slots of an AtomicReferenceArray,
+ * which publishes every record fully built. Inserts and deletes of one key
+ * always start at the same home slot, so they are kept in order by a lock
+ * chosen from that slot. Different keys may still race for a free slot;
+ * a slot is only filled by compareAndSet, and the loser moves on to the
+ * next slot of its probe. Doubling, tombstone clean up, printing and remap
+ * hold the write side of a read-write lock, which inserts and deletes hold
+ * the read side of.
+ *
+ * @author Yu-Kai Lo
+ * @version 1.0
+ */
+public class ConcurrentHash implements SymbolTable {
+    /**
+     * The marker left in the slot of a deleted record.
+     */
+    private static final Record TOMBSTONE = new Record("TOMBSTONE", 0);
+
+    /**
+     * The number of locks shared out among the home slots.
+     */
+    private static final int STRIPES = 64;
+
+    private volatile AtomicReferenceArray<Record> table;
+    private AtomicInteger size;
+    private AtomicInteger tombstones;
+    private ReentrantLock[] stripes;
+    private ReentrantReadWriteLock resizeLock;
+    private String type;
+    private OutputSink output;
+
+    /**
+     * Constructs a new concurrent HashTable that writes its messages to a
+     * sink. Messages from different threads are written one at a time.
+     *
+     * @param inputTableSize
+     *            The initial size of the hash table.
+     * @param type
+     *            The type of the hash table.
+     * @param output
+     *            The sink for the messages.
+     */
+    public ConcurrentHash(int inputTableSize, String type,
+        OutputSink output) {
+        table = new AtomicReferenceArray<Record>(inputTableSize);
+        size = new AtomicInteger();
+        tombstones = new AtomicInteger();
+        stripes = new ReentrantLock[STRIPES];
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+        resizeLock = new ReentrantReadWriteLock();
+        this.type = type;
+        this.output = output;
+    }
+
+
+    /**
+     * Inserts a record into the hash table. A key already in the table is
+     * left alone.
+     *
+     * @param record
+     *            The record to insert.
+     * @throws Exception.
+     */
+    void hashInsert(Record record) throws Exception {
+        String key = record.getKey();
+        long hash = record.getHash();
+        while (true) {
+            if (size.get() >= table.length() / 2) {
+                resize(table);
+            }
+            resizeLock.readLock().lock();
+            try {
+                AtomicReferenceArray<Record> t = table;
+                if (size.get() >= t.length() / 2) {
+                    continue;
+                }
+                int home = Hash.slot(hash, t.length());
+                ReentrantLock stripe = stripes[home % STRIPES];
+                stripe.lock();
+                try {
+                    if (find(t, key, hash) >= 0) {
+                        return;
+                    }
+                    if (place(t, record, home)) {
+                        size.incrementAndGet();
+                        write(OutputSink.Event.ADDED, "|" + key
+                            + "| is added to the " + type + " database.");
+                        return;
+                    }
+                }
+                finally {
+                    stripe.unlock();
+                }
+            }
+            finally {
+                resizeLock.readLock().unlock();
+            }
+            // No free slot on the probe sequence
+            resize(table);
+        }
+    }
+
+
+    /**
+     * Searches for a record with the given key in the hash table.
+     *
+     * @param key
+     *            The key to search for.
+     * @return The record with the matching key, or null if not found.
+     */
+    Record hashSearch(String key) {
+        return hashSearch(key, Hash.fold(key));
+    }
+
+
+    /**
+     * Searches for a key whose folded sum is already known. No lock is
+     * taken, so a search running during a doubling reads the table as it
+     * was before.
+     *
+     * @param key
+     *            The key to search for.
+     * @param hash
+     *            The folded sum of the key, from Hash.fold().
+     * @return The record with the matching key, or null if not found.
+     */
+    Record hashSearch(String key, long hash) {
+        AtomicReferenceArray<Record> t = table;
+        int pos = find(t, key, hash);
+        return pos < 0 ? null : t.get(pos);
+    }
+
+
+    @Override
+    public int hashGet(String key, long hash) {
+        Record record = hashSearch(key, hash);
+        return record == null ? NOT_FOUND : record.getValue();
+    }
+
+
+    @Override
+    public void hashInsert(String key, long hash, int value)
+        throws Exception {
+        hashInsert(new Record(key, value, hash));
+    }
+
+
+    /**
+     * Deletes a record with the given key from the hash table.
+     *
+     * @param key
+     *            The key of the record to delete.
+     */
+    @Override
+    public void hashDelete(String key) {
+        long hash = Hash.fold(key);
+        boolean removed = false;
+        resizeLock.readLock().lock();
+        try {
+            AtomicReferenceArray<Record> t = table;
+            ReentrantLock stripe = stripes[Hash.slot(hash, t.length())
+                % STRIPES];
+            stripe.lock();
+            try {
+                int pos = find(t, key, hash);
+                if (pos >= 0) {
+                    t.set(pos, TOMBSTONE);
+                    size.decrementAndGet();
+                    tombstones.incrementAndGet();
+                    removed = true;
+                    write(OutputSink.Event.REMOVED, "|" + key
+                        + "| is removed from the " + type + " database.");
+                }
+            }
+            finally {
+                stripe.unlock();
+            }
+        }
+        finally {
+            resizeLock.readLock().unlock();
+        }
+        if (removed && tombstones.get() > table.length() / 4) {
+            resizeLock.writeLock().lock();
+            try {
+                if (tombstones.get() > table.length() / 4) {
+                    AtomicReferenceArray<Record> newTable = rehash(
+                        table.length());
+                    if (newTable != null) {
+                        table = newTable;
+                        tombstones.set(0);
+                    }
+                }
+            }
+            finally {
+                resizeLock.writeLock().unlock();
+            }
+        }
+    }
+
+
+    /**
+     * Find the slot holding a key by quadratic probing.
+     *
+     * @param t
+     *            The table to search.
+     * @param key
+     *            The key to search for.
+     * @param hash
+     *            The folded sum of the key.
+     * @return The slot of the key, or -1 if it is not there.
+     */
+    private static int find(AtomicReferenceArray<Record> t, String key,
+        long hash) {
+        int length = t.length();
+        int home = Hash.slot(hash, length);
+        int pos = home;
+        int probeCount = 0;
+        Record r = t.get(pos);
+
+        while (r != null && probeCount < length) {
+            if (r != TOMBSTONE && r.getHash() == hash && r.getKey().equals(
+                key)) {
+                return pos;
+            }
+            pos = (home + probeCount * probeCount) % length;
+            probeCount++;
+            r = t.get(pos);
+        }
+        return -1;
+    }
+
+
+    /**
+     * Place a record in the first empty or tombstone slot of its probe
+     * sequence. A slot taken by another thread between the read and the
+     * compareAndSet is probed again.
+     * 
+     * @param t
+     *            The table.
+     * @param record
+     *            The record to place.
+     * @param home
+     *            The home slot of the record.
+     * @return False if no free slot was found.
+     */
+    private boolean place(AtomicReferenceArray<Record> t, Record record,
+        int home) {
+        int length = t.length();
+        int pos = home;
+        int probeCount = 0;
+        while (probeCount < length) {
+            Record r = t.get(pos);
+            if (r == null && t.compareAndSet(pos, null, record)) {
+                return true;
+            }
+            if (r == TOMBSTONE && t.compareAndSet(pos, TOMBSTONE, record)) {
+                tombstones.decrementAndGet();
+                return true;
+            }
+            if (r != null && r != TOMBSTONE) {
+                pos = (home + probeCount * probeCount) % length;
+                probeCount++;
+            }
+        }
+        return false;
+    }
+
+
+    /**
+     * Double the table, unless another thread already replaced it.
+     * 
+     * @param seen
+     *            The table the caller found too full.
+     */
+    private void resize(AtomicReferenceArray<Record> seen) {
+        resizeLock.writeLock().lock();
+        try {
+            if (table != seen) {
+                return;
+            }
+            int newSize = table.length();
+            AtomicReferenceArray<Record> newTable = null;
+            while (newTable == null) {
+                newSize = newSize * 2;
+                newTable = rehash(newSize);
+                write(OutputSink.Event.RESIZED, type
+                    + " hash table size doubled.");
+            }
+            table = newTable;
+            tombstones.set(0);
+        }
+        finally {
+            resizeLock.writeLock().unlock();
+        }
+    }
+
+
+    /**
+     * Place every live record into a new table, in slot order. The caller
+     * holds the write lock.
+     * 
+     * @param newSize
+     *            The size of the new table.
+     * @return The new table, or null if a record could not be placed.
+     */
+    private AtomicReferenceArray<Record> rehash(int newSize) {
+        AtomicReferenceArray<Record> newTable =
+            new AtomicReferenceArray<Record>(newSize);
+        for (int i = 0; i < table.length(); i++) {
+            Record r = table.get(i);
+            if (r != null && r != TOMBSTONE && !place(newTable, r, Hash.slot(r
+                .getHash(), newSize))) {
+                return null;
+            }
+        }
+        return newTable;
+    }
+
+
+    /**
+     * Replace the value of every record with its entry in a map of new
+     * node ids.
+     * 
+     * @param newIds
+     *            The new id of each old id.
+     */
+    @Override
+    public void remap(int[] newIds) {
+        resizeLock.writeLock().lock();
+        try {
+            for (int i = 0; i < table.length(); i++) {
+                Record r = table.get(i);
+                if (r != null && r != TOMBSTONE) {
+                    r.setValue(newIds[r.getValue()]);
+                }
+            }
+        }
+        finally {
+            resizeLock.writeLock().unlock();
+        }
+    }
+
+
+    /**
+     * Prints the contents of the hash table, as Hash does.
+     */
+    @Override
+    public void hashPrintHashtable() {
+        resizeLock.writeLock().lock();
+        try {
+            for (int i = 0; i < table.length(); i++) {
+                Record r = table.get(i);
+                if (r == TOMBSTONE) {
+                    write(OutputSink.Event.SLOT, i + ": " + r.getKey());
+                }
+                else if (r != null) {
+                    write(OutputSink.Event.SLOT, i + ": |" + r.getKey()
+                        + "|");
+                }
+            }
+            write(OutputSink.Event.TOTAL, "total " + type.toLowerCase()
+                + "s: " + size.get());
+        }
+        finally {
+            resizeLock.writeLock().unlock();
+        }
+    }
+
+
+    /**
+     * Write one message, keeping lines from different threads apart.
+     * 
+     * @param event
+     *            The kind of message.
+     * @param line
+     *            The message.
+     */
+    private void write(OutputSink.Event event, String line) {
+        synchronized (output) {
+            output.write(event, line);
+        }
+    }
+
+
+    @Override
+    public int capacity() {
+        return table.length();
+    }
+
+
+    @Override
+    public void visitSlots(SlotVisitor visitor) throws IOException {
+        resizeLock.writeLock().lock();
+        try {
+            for (int i = 0; i < table.length(); i++) {
+                Record r = table.get(i);
+                if (r == TOMBSTONE) {
+                    visitor.visit(i, null, 0, 0);
+                }
+                else if (r != null) {
+                    visitor.visit(i, r.getKey(), r.getHash(), r.getValue());
+                }
+            }
+        }
+        finally {
+            resizeLock.writeLock().unlock();
+        }
+    }
+
+
+    @Override
+    public void restoreSlot(int pos, String key, long hash, int value) {
+        if (key == null) {
+            table.set(pos, TOMBSTONE);
+            tombstones.incrementAndGet();
+        }
+        else {
+            table.set(pos, new Record(key, value, hash));
+            size.incrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,110 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import student.TestCase;
+
+/**
+ * This class was designed to test the concurrent Hash table.
+ *
+ * @author Yu-Kai Lo
+ * @version 1.0
+ */
+public class ConcurrentHashTest extends TestCase {
+
+    /**
+     * Return everything a sink was given, one line each.
+     * 
+     * @param sink
+     *            The sink.
+     * @return The lines.
+     */
+    private String lines(EventSink sink) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < sink.size(); i++) {
+            builder.append(sink.line(i)).append('\n');
+        }
+        return builder.toString();
+    }
+
+
+    /**
+     * This test tries the same inserts and deletes on both tables from one
+     * thread and compares what they print.
+     * 
+     * @throws Exception
+     */
+    public void testSameAsHash() throws Exception {
+        EventSink expected = new EventSink();
+        EventSink actual = new EventSink();
+        Hash hash = new Hash(10, "Song", expected);
+        ConcurrentHash concurrent = new ConcurrentHash(10, "Song", actual);
+        Random random = new Random(14);
+        for (int i = 0; i < 200; i++) {
+            String key = "Song " + random.nextInt(25);
+            if (random.nextInt(3) == 0) {
+                hash.hashDelete(key);
+                concurrent.hashDelete(key);
+            }
+            else if (hash.hashSearch(key) == null) {
+                hash.hashInsert(new Record(key, i));
+                concurrent.hashInsert(new Record(key, i));
+            }
+            assertEquals(hash.hashSearch(key) == null, concurrent.hashSearch(
+                key) == null);
+        }
+        hash.hashPrintHashtable();
+        concurrent.hashPrintHashtable();
+        assertEquals(lines(expected), lines(actual));
+    }
+
+
+    /**
+     * This test tries to load, search and delete from many threads at once
+     * and checks that every thread's keys end up where they should.
+     * 
+     * @throws Exception
+     */
+    public void testManyThreads() throws Exception {
+        EventSink sink = new EventSink();
+        final ConcurrentHash table = new ConcurrentHash(16, "Song", sink);
+        final int perThread = 5000;
+        final AtomicInteger missing = new AtomicInteger();
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int t = 0; t < 8; t++) {
+            final int id = t;
+            threads.add(new Thread(() -> {
+                try {
+                    for (int i = 0; i < perThread; i++) {
+                        String key = "Song " + id + "-" + i;
+                        table.hashInsert(new Record(key, i));
+                        if (table.hashSearch(key) == null) {
+                            missing.incrementAndGet();
+                        }
+                        if (i % 2 == 1) {
+                            table.hashDelete("Song " + id + "-" + (i - 1));
+                        }
+                    }
+                }
+                catch (Exception e) {
+                    missing.incrementAndGet();
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(0, missing.get());
+        for (int t = 0; t < 8; t++) {
+            for (int i = 0; i < perThread; i++) {
+                Record record = table.hashSearch("Song " + t + "-" + i);
+                assertEquals(i % 2 == 1, record != null);
+            }
+        }
+        table.hashPrintHashtable();
+        assertEquals("total songs: 20000", sink.line(sink.size() - 1));
+    }
+}
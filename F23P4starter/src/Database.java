@@ -1,3 +1,9 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Iterator;
+
 /**
  * This is the controller of the program.
  * It uses a Graph and two HashTables for storage and retrieval of records.
@@ -6,10 +12,31 @@
  * @version 1.0
  */
 public class Database {
-    private Hash artistHashTable;
-    private Hash songHashTable;
+    /**
+     * The number of free node ids that triggers a compaction, once they are
+     * also more than half of all ids handed out.
+     */
+    static final int COMPACT_THRESHOLD = 1024;
+
+    /**
+     * The number of pairs bulkInsert sorts and merges at a time.
+     */
+    static final int BULK_BATCH = 1 << 20;
+
+    private volatile SymbolTable artistHashTable; // Also read by idOf()
+    private volatile SymbolTable songHashTable;
     private GraphL graph;
+    private Components components;
+    private PathFinder paths;
     private int nextNodeId;
+    private int[] freeIds; // Ids of removed nodes, ready for reuse
+    private int freeCount;
+    private SwitchSink output;
+    private SymbolTable.Mode mode;
+    private CommandLog log; // Null unless the commands are being logged
+    private CommandLog replaying; // The log being replayed, or null
+    private volatile long epoch; // Odd while a key may be losing its id
+    private int changing; // How many changes are running, one inside another
 
     /**
      * Create a new database with the specified sizes for the hash table and
@@ -19,11 +46,50 @@ public class Database {
      *            The size of the HashTable.
      */
     public Database(int hashTableSize) {
-        artistHashTable = new Hash(hashTableSize, "Artist");
-        songHashTable = new Hash(hashTableSize, "Song");
+        this(hashTableSize, new StreamSink(System.out, true));
+    }
+
+
+    /**
+     * Create a new database that writes its messages to a sink.
+     * 
+     * @param hashTableSize
+     *            The size of the HashTable.
+     * @param output
+     *            The sink for all messages.
+     */
+    public Database(int hashTableSize, OutputSink output) {
+        this(hashTableSize, output, SymbolTable.Mode.RECORDS);
+    }
+
+
+    /**
+     * Create a new database whose hash tables store their entries in the
+     * given mode. Every mode doubles its tables in one pass, so each finds
+     * and prints the same records in the same slots.
+     * 
+     * @param hashTableSize
+     *            The size of the HashTable.
+     * @param output
+     *            The sink for all messages.
+     * @param mode
+     *            How the hash tables store their entries.
+     */
+    public Database(int hashTableSize, OutputSink output,
+        SymbolTable.Mode mode) {
+        this.output = new SwitchSink(output);
+        this.mode = mode;
+        artistHashTable = SymbolTable.create(mode, hashTableSize, "Artist",
+            this.output);
+        songHashTable = SymbolTable.create(mode, hashTableSize, "Song",
+            this.output);
         graph = new GraphL();
         graph.init(hashTableSize);
+        components = new Components(graph);
+        paths = new PathFinder(graph);
         nextNodeId = 0;
+        freeIds = new int[hashTableSize];
+        freeCount = 0;
     }
 
 
@@ -37,38 +103,88 @@ public class Database {
      * @throws Exception
      */
     public void insert(String artist, String song) throws Exception {
-        int artistId;
-        int songId;
+        insert(artist, Hash.fold(artist), song, Hash.fold(song));
+    }
 
-        Record artistRecord = artistHashTable.hashSearch(artist);
-        Record songRecord = songHashTable.hashSearch(song);
 
-        boolean artistExists = artistRecord != null;
-        boolean songExists = songRecord != null;
+    /**
+     * Insert a pair of song and artist whose folded sums are already known,
+     * as the ingest pipeline computes them ahead of the database.
+     * 
+     * @param artist
+     *            The input artist name.
+     * @param artistHash
+     *            The folded sum of the artist, from Hash.fold().
+     * @param song
+     *            The input song name.
+     * @param songHash
+     *            The folded sum of the song, from Hash.fold().
+     * @throws Exception
+     */
+    public void insert(String artist, long artistHash, String song,
+        long songHash) throws Exception {
+        insert(artist, artistHash, SymbolTable.NOT_FOUND, song, songHash,
+            SymbolTable.NOT_FOUND, -1);
+    }
+
 
-        if (artistExists) {
-            artistId = artistRecord.getValue();
+    /**
+     * Insert a pair of song and artist whose ids another thread may have
+     * already looked up with idOf(). The ids are only used if the epoch
+     * they were found at is still current, so no key has been removed or
+     * renumbered since they were read. The epoch is always even here, so
+     * ids read while a change was running never match. A key that was
+     * missing is looked up again, as an earlier insert may have added it.
+     * 
+     * @param artist
+     *            The input artist name.
+     * @param artistHash
+     *            The folded sum of the artist, from Hash.fold().
+     * @param artistId
+     *            The artist's id as looked up, or NOT_FOUND.
+     * @param song
+     *            The input song name.
+     * @param songHash
+     *            The folded sum of the song, from Hash.fold().
+     * @param songId
+     *            The song's id as looked up, or NOT_FOUND.
+     * @param foundAt
+     *            The epoch() the ids were looked up at.
+     * @throws Exception
+     */
+    public void insert(String artist, long artistHash, int artistId,
+        String song, long songHash, int songId, long foundAt)
+        throws Exception {
+        logCommand(CommandLog.INSERT, artist, song);
+        boolean current = foundAt == epoch;
+        if (!current || artistId == SymbolTable.NOT_FOUND) {
+            artistId = artistHashTable.hashGet(artist, artistHash);
         }
-        else {
-            artistId = nextNodeId++;
-            artistRecord = new Record(artist, artistId);
-            artistHashTable.hashInsert(artistRecord);
-            graph.setValue(artistId, String.valueOf(artistId));
+        if (!current || songId == SymbolTable.NOT_FOUND) {
+            songId = songHashTable.hashGet(song, songHash);
         }
 
-        if (songExists) {
-            songId = songRecord.getValue();
+        boolean artistExists = artistId != SymbolTable.NOT_FOUND;
+        boolean songExists = songId != SymbolTable.NOT_FOUND;
+
+        if (!artistExists) {
+            artistId = newNodeId();
+            artistHashTable.hashInsert(artist, artistHash, artistId);
+            graph.setValue(artistId, artist);
+            components.addNode(artistId);
         }
-        else {
-            songId = nextNodeId++;
-            songRecord = new Record(song, songId);
-            songHashTable.hashInsert(songRecord);
-            graph.setValue(songId, String.valueOf(songId));
+
+        if (!songExists) {
+            songId = newNodeId();
+            songHashTable.hashInsert(song, songHash, songId);
+            graph.setValue(songId, song);
+            components.addNode(songId);
         }
 
         if (artistExists && songExists) {
             if (graph.hasEdge(artistId, songId)) {
-                System.out.println("|" + artist + "<SEP>" + song
+                output.write(OutputSink.Event.DUPLICATE, "|" + artist
+                    + "<SEP>" + song
                     + "| duplicates a record already in the database.");
                 return;
             }
@@ -76,6 +192,183 @@ public class Database {
 
         graph.addEdge(artistId, songId, 1);
         graph.addEdge(songId, artistId, 1);
+        components.union(artistId, songId);
+    }
+
+
+    /**
+     * Insert a stream of artist and song pairs, with the same result as
+     * calling insert on each in turn. The pairs are taken BULK_BATCH at a
+     * time, and the batch only grows as large as the pairs need. Each
+     * pair's ids are looked up or handed out in order, so the hash tables
+     * print the same messages, but the edges are only packed into longs.
+     * Each batch's edges are then sorted and deduplicated once, and every
+     * node gets its new neighbors merged in by one pass.
+     * 
+     * The duplicate messages need to know which pairs repeat an edge, which
+     * is only known after the sort. When they are wanted, the batch's
+     * messages are held back and written out afterwards, with each
+     * duplicate message in its place.
+     * 
+     * @param pairs
+     *            The pairs, each an artist and a song.
+     * @param reportDuplicates
+     *            Whether to print the duplicate messages.
+     * @throws Exception
+     */
+    public void bulkInsert(Iterator<String[]> pairs, boolean reportDuplicates)
+        throws Exception {
+        String[][] batch = new String[16][];
+        while (pairs.hasNext()) {
+            int count = 0;
+            while (count < BULK_BATCH && pairs.hasNext()) {
+                if (count == batch.length) {
+                    batch = Arrays.copyOf(batch, Math.min(count * 2,
+                        BULK_BATCH));
+                }
+                batch[count++] = pairs.next();
+            }
+            insertBatch(batch, count, reportDuplicates);
+        }
+    }
+
+
+    /**
+     * Insert one batch of pairs.
+     * 
+     * @param batch
+     *            The pairs.
+     * @param count
+     *            The number of pairs in the batch.
+     * @param reportDuplicates
+     *            Whether to print the duplicate messages.
+     * @throws Exception
+     */
+    private void insertBatch(String[][] batch, int count,
+        boolean reportDuplicates) throws Exception {
+        EventSink held = reportDuplicates ? new EventSink() : null;
+        int[] heldEnd = reportDuplicates ? new int[count] : null;
+        OutputSink target = reportDuplicates ? output.setTarget(held) : null;
+        long[] keys = new long[count];
+        try {
+            for (int i = 0; i < count; i++) {
+                String artist = batch[i][0];
+                String song = batch[i][1];
+                logCommand(CommandLog.INSERT, artist, song);
+                int artistId = bulkId(artistHashTable, artist);
+                int songId = bulkId(songHashTable, song);
+                keys[i] = ((long)artistId << 32) | songId;
+                if (reportDuplicates) {
+                    heldEnd[i] = held.size();
+                }
+            }
+        }
+        finally {
+            if (reportDuplicates) {
+                output.setTarget(target);
+            }
+        }
+
+        long[] edges = keys.clone();
+        Arrays.parallelSort(edges);
+        int unique = 0;
+        for (int i = 0; i < count; i++) {
+            if (unique == 0 || edges[i] != edges[unique - 1]) {
+                edges[unique++] = edges[i];
+            }
+        }
+        boolean[] old = new boolean[unique];
+        for (int i = 0; i < unique; i++) {
+            old[i] = graph.hasEdge((int)(edges[i] >>> 32), (int)edges[i]);
+        }
+
+        if (reportDuplicates) {
+            boolean[] seen = old.clone();
+            int next = 0;
+            for (int i = 0; i < count; i++) {
+                while (next < heldEnd[i]) {
+                    output.write(held.event(next), held.line(next));
+                    next++;
+                }
+                int edge = Arrays.binarySearch(edges, 0, unique, keys[i]);
+                if (seen[edge]) {
+                    output.write(OutputSink.Event.DUPLICATE, "|" + batch[i][0]
+                        + "<SEP>" + batch[i][1]
+                        + "| duplicates a record already in the database.");
+                }
+                seen[edge] = true;
+            }
+        }
+        mergeBatch(edges, unique, old);
+    }
+
+
+    /**
+     * Return the id of a key, adding it with a new id if it is missing.
+     * 
+     * @param table
+     *            The hash table of the key.
+     * @param key
+     *            The key.
+     * @return The id.
+     * @throws Exception
+     */
+    private int bulkId(SymbolTable table, String key) throws Exception {
+        long hash = Hash.fold(key);
+        int id = table.hashGet(key, hash);
+        if (id == SymbolTable.NOT_FOUND) {
+            id = newNodeId();
+            graph.ensureNodes(id + 1);
+            table.hashInsert(key, hash, id);
+            graph.setValue(id, key);
+            components.addNode(id);
+        }
+        return id;
+    }
+
+
+    /**
+     * Add the new edges of a batch to the graph in both directions. The
+     * edges are sorted by artist and then song, so filling each node's
+     * block in that order leaves every block sorted.
+     * 
+     * @param edges
+     *            The batch's distinct edges, sorted.
+     * @param unique
+     *            The number of distinct edges.
+     * @param old
+     *            Whether each edge was in the graph before the batch.
+     */
+    private void mergeBatch(long[] edges, int unique, boolean[] old) {
+        int n = graph.nodeCount();
+        int[] offsets = new int[n + 1];
+        int added = 0;
+        for (int i = 0; i < unique; i++) {
+            if (!old[i]) {
+                offsets[(int)(edges[i] >>> 32) + 1]++;
+                offsets[(int)edges[i] + 1]++;
+                added++;
+            }
+        }
+        for (int v = 0; v < n; v++) {
+            offsets[v + 1] += offsets[v];
+        }
+        int[] fill = Arrays.copyOf(offsets, n);
+        int[] targets = new int[2 * added];
+        for (int i = 0; i < unique; i++) {
+            if (!old[i]) {
+                int artistId = (int)(edges[i] >>> 32);
+                int songId = (int)edges[i];
+                targets[fill[artistId]++] = songId;
+                targets[fill[songId]++] = artistId;
+                components.union(artistId, songId);
+            }
+        }
+        for (int v = 0; v < n; v++) {
+            if (offsets[v + 1] > offsets[v]) {
+                graph.mergeEdges(v, targets, offsets[v], offsets[v + 1]);
+            }
+        }
     }
 
 
@@ -86,14 +379,16 @@ public class Database {
      *            The artist name to remove.
      */
     public void removeArtist(String artist) {
-        Record artistRecord = artistHashTable.hashSearch(artist);
-        if (artistRecord != null) {
+        logCommand(CommandLog.REMOVE_ARTIST, artist, null);
+        int artistId = artistHashTable.hashGet(artist, Hash.fold(artist));
+        if (artistId != SymbolTable.NOT_FOUND) {
+            beginChange();
             artistHashTable.hashDelete(artist);
-            removeNodeAndEdges(artistRecord.getValue());
-            graph.setValue(artistRecord.getValue(), null);
+            removeNodeAndEdges(artistId);
+            endChange();
         }
         else {
-            System.out.println("|" + artist
+            output.write(OutputSink.Event.NOT_FOUND, "|" + artist
                 + "| does not exist in the Artist database.");
         }
     }
@@ -106,34 +401,309 @@ public class Database {
      *            The song name to remove.
      */
     public void removeSong(String song) {
-        Record songRecord = songHashTable.hashSearch(song);
-        if (songRecord != null) {
+        logCommand(CommandLog.REMOVE_SONG, song, null);
+        int songId = songHashTable.hashGet(song, Hash.fold(song));
+        if (songId != SymbolTable.NOT_FOUND) {
+            beginChange();
             songHashTable.hashDelete(song);
-            removeNodeAndEdges(songRecord.getValue());
-            graph.setValue(songRecord.getValue(), null);
+            removeNodeAndEdges(songId);
+            endChange();
         }
         else {
-            System.out.println("|" + song
+            output.write(OutputSink.Event.NOT_FOUND, "|" + song
                 + "| does not exist in the Song database.");
         }
     }
 
 
     /**
-     * Remove node and edges from graph.
+     * Return an id for a new node, reusing the id of a removed node when
+     * there is one.
+     * 
+     * @return The node id.
+     */
+    private int newNodeId() {
+        if (freeCount > 0) {
+            return freeIds[--freeCount];
+        }
+        return nextNodeId++;
+    }
+
+
+    /**
+     * Remove node and edges from graph, and put the node id on the free
+     * list. Only the node's own neighbors are visited.
      * 
      * @param nodeId
      *            The targeted node id.
      */
     private void removeNodeAndEdges(int nodeId) {
-        for (int i = 0; i < graph.nodeCount(); i++) {
-            if (graph.hasEdge(nodeId, i)) {
-                graph.removeEdge(nodeId, i);
+        graph.removeVertex(nodeId);
+        graph.setValue(nodeId, null);
+        components.removeNode(nodeId);
+        if (freeCount == freeIds.length) {
+            freeIds = Arrays.copyOf(freeIds, freeCount * 2);
+        }
+        freeIds[freeCount++] = nodeId;
+        if (freeCount >= COMPACT_THRESHOLD && freeCount * 2 > nextNodeId) {
+            compact();
+        }
+    }
+
+
+    /**
+     * Renumber the nodes densely and update the ids stored in both hash
+     * tables, so the graph no longer carries the slots of removed nodes.
+     */
+    public void compact() {
+        beginChange();
+        int[] newIds = graph.compact();
+        artistHashTable.remap(newIds);
+        songHashTable.remap(newIds);
+        components.rebuild();
+        nextNodeId -= freeCount;
+        freeCount = 0;
+        endChange();
+    }
+
+
+    /**
+     * Start a change that may take ids away from keys. The epoch turns odd
+     * for as long as the outermost change runs, so an id looked up at an
+     * odd epoch, or at an even one that has since moved on, is never used.
+     */
+    private void beginChange() {
+        if (changing++ == 0) {
+            epoch++;
+        }
+    }
+
+
+    /**
+     * End a change begun with beginChange(), turning the epoch even again
+     * once the outermost change is over.
+     */
+    private void endChange() {
+        if (--changing == 0) {
+            epoch++;
+        }
+    }
+
+
+    /**
+     * Write the whole database to a snapshot file: both hash tables slot by
+     * slot, the graph, and the node id counters. The snapshot also records
+     * the id of the log and how many of its records it holds, so a crash
+     * before the log is cut back does not apply them twice.
+     * 
+     * @param path
+     *            The snapshot file.
+     */
+    public void save(String path) {
+        try {
+            if (log != null) {
+                log.sync();
             }
+            long logId = log == null ? 0 : log.id();
+            long logPosition = log == null ? 0 : log.position();
+            Snapshot.write(path, out -> {
+                out.writeLong(logId);
+                out.writeLong(logPosition);
+                out.writeInt(nextNodeId);
+                out.writeInt(freeCount);
+                for (int i = 0; i < freeCount; i++) {
+                    out.writeInt(freeIds[i]);
+                }
+                Snapshot.writeTable(out, artistHashTable);
+                Snapshot.writeTable(out, songHashTable);
+                graph.save(out);
+            });
+            if (log != null) {
+                log.restart(CommandLog.LOAD, path);
+            }
+            output.write(OutputSink.Event.MESSAGE, "|" + path
+                + "| is saved.");
+        }
+        catch (IOException e) {
+            output.write(OutputSink.Event.MESSAGE, "|" + path
+                + "| could not be saved: " + e.getMessage());
+        }
+    }
+
 
-            if (graph.hasEdge(i, nodeId)) {
-                graph.removeEdge(i, nodeId);
+    /**
+     * Replace the whole database with the one in a snapshot file. Nothing
+     * changes unless the whole file reads back cleanly.
+     * 
+     * @param path
+     *            The snapshot file.
+     */
+    public void load(String path) {
+        try {
+            restore(path);
+            logCommand(CommandLog.LOAD, path, null);
+            output.write(OutputSink.Event.MESSAGE, "|" + path
+                + "| is loaded.");
+        }
+        catch (IOException | RuntimeException e) {
+            output.write(OutputSink.Event.MESSAGE, "|" + path
+                + "| could not be loaded: " + e.getMessage());
+        }
+    }
+
+
+    /**
+     * Replace the whole database with the one in a snapshot file. If it
+     * was saved from the log being replayed, the records it already holds
+     * are skipped.
+     * 
+     * @param path
+     *            The snapshot file.
+     * @throws IOException
+     *             If the file cannot be read or is not a valid snapshot.
+     */
+    private void restore(String path) throws IOException {
+        ByteBuffer in = Snapshot.read(path);
+        long logId = 0;
+        long logPosition = 0;
+        if (Snapshot.version(in) > 1) {
+            logId = in.getLong();
+            logPosition = in.getLong();
+        }
+        try {
+            int newNextNodeId = in.getInt();
+            int newFreeCount = in.getInt();
+            int[] newFreeIds = new int[Math.max(newFreeCount, 16)];
+            for (int i = 0; i < newFreeCount; i++) {
+                newFreeIds[i] = in.getInt();
             }
+            SymbolTable artists = Snapshot.readTable(in, mode, "Artist",
+                output);
+            SymbolTable songs = Snapshot.readTable(in, mode, "Song", output);
+            GraphL newGraph = new GraphL();
+            newGraph.load(in);
+            Components newComponents = new Components(newGraph);
+            PathFinder newPaths = new PathFinder(newGraph);
+
+            beginChange();
+            nextNodeId = newNextNodeId;
+            freeCount = newFreeCount;
+            freeIds = newFreeIds;
+            artistHashTable = artists;
+            songHashTable = songs;
+            graph = newGraph;
+            components = newComponents;
+            paths = newPaths;
+            endChange();
+        }
+        catch (RuntimeException e) {
+            throw new IOException("damaged body", e);
+        }
+        if (replaying != null && logId == replaying.id()) {
+            replaying.skipTo(logPosition);
+        }
+    }
+
+
+    /**
+     * Start logging every command that changes the database to a
+     * write-ahead log, after replaying the commands already in it without
+     * printing anything. Saving a snapshot then cuts the log back to a
+     * single load of that snapshot, so the log alone always rebuilds the
+     * database. A snapshot the log loads must read back cleanly, or the
+     * replay fails rather than carry on from an empty database.
+     * 
+     * @param path
+     *            The log file.
+     * @param syncEvery
+     *            The number of commands written and forced to disk
+     *            together.
+     * @return The number of commands replayed.
+     * @throws Exception
+     *             If the log cannot be opened or replayed.
+     */
+    public int openLog(String path, int syncEvery) throws Exception {
+        CommandLog opened = new CommandLog(path, syncEvery);
+        OutputSink target = output.setTarget(new NullSink());
+        replaying = opened;
+        try {
+            opened.replay(this::redo);
+        }
+        finally {
+            replaying = null;
+            output.setTarget(target);
+        }
+        log = opened;
+        output.write(OutputSink.Event.MESSAGE, "|" + path + "| replayed "
+            + log.replayedCount() + " commands.");
+        return log.replayedCount();
+    }
+
+
+    /**
+     * Apply one command from the log.
+     * 
+     * @param op
+     *            The operation.
+     * @param first
+     *            The artist, song or snapshot.
+     * @param second
+     *            The song of an insert.
+     * @throws Exception
+     */
+    private void redo(byte op, String first, String second)
+        throws Exception {
+        switch (op) {
+            case CommandLog.INSERT:
+                insert(first, second);
+                break;
+            case CommandLog.REMOVE_ARTIST:
+                removeArtist(first);
+                break;
+            case CommandLog.REMOVE_SONG:
+                removeSong(first);
+                break;
+            case CommandLog.LOAD:
+                restore(first);
+                break;
+            default:
+                throw new IOException("Unknown command log operation " + op);
+        }
+    }
+
+
+    /**
+     * Append a command to the log, if there is one, before it runs.
+     * 
+     * @param op
+     *            The operation.
+     * @param first
+     *            The first string.
+     * @param second
+     *            The second string, or null.
+     */
+    private void logCommand(byte op, String first, String second) {
+        if (log == null) {
+            return;
+        }
+        try {
+            log.append(op, first, second);
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+
+    /**
+     * Force any logged commands still waiting to disk and stop logging.
+     * 
+     * @throws IOException
+     */
+    public void closeLog() throws IOException {
+        if (log != null) {
+            log.close();
+            log = null;
         }
     }
 
@@ -155,10 +725,121 @@ public class Database {
 
 
     /**
-     * Print the details of the graph.
+     * Print the details of the graph. The components are kept up to date
+     * as records come and go, so only the diameter needs a search, and an
+     * unchanged graph prints the figures found last time.
      */
     public void printGraph() {
-        graph.printGraph();
+        int[] stats = components.stats();
+        GraphCSR.printComponents(output, stats[0], stats[1], stats[2]);
+    }
+
+
+    /**
+     * Print a shortest path between two records, as the number of hops and
+     * the names along it. Edges only join artists to songs, so the path
+     * takes turns between the two.
+     * 
+     * @param fromArtist
+     *            Whether the first record is an artist, not a song.
+     * @param from
+     *            The name of the first record.
+     * @param toArtist
+     *            Whether the last record is an artist, not a song.
+     * @param to
+     *            The name of the last record.
+     */
+    public void path(boolean fromArtist, String from, boolean toArtist,
+        String to) {
+        int source = lookup(fromArtist, from);
+        int target = lookup(toArtist, to);
+        if (source == SymbolTable.NOT_FOUND
+            || target == SymbolTable.NOT_FOUND) {
+            return;
+        }
+        int[] nodes = paths.find(source, target);
+        if (nodes == null) {
+            output.write(OutputSink.Event.PATH, "There is no path from |"
+                + from + "| to |" + to + "|");
+            return;
+        }
+        output.write(OutputSink.Event.PATH, "The path from |" + from
+            + "| to |" + to + "| has " + (nodes.length - 1) + " hops");
+        StringBuilder line = new StringBuilder();
+        for (int i = 0; i < nodes.length; i++) {
+            if (i > 0) {
+                line.append(" -> ");
+            }
+            line.append('|').append(graph.getValue(nodes[i])).append('|');
+        }
+        output.write(OutputSink.Event.PATH, line.toString());
+    }
+
+
+    /**
+     * Return the node id of an artist or song, printing a message if it is
+     * missing.
+     * 
+     * @param artist
+     *            Whether the name is an artist, not a song.
+     * @param name
+     *            The name.
+     * @return The node id, or NOT_FOUND.
+     */
+    private int lookup(boolean artist, String name) {
+        SymbolTable table = artist ? artistHashTable : songHashTable;
+        int id = table.hashGet(name, Hash.fold(name));
+        if (id == SymbolTable.NOT_FOUND) {
+            output.write(OutputSink.Event.NOT_FOUND, "|" + name
+                + "| does not exist in the " + (artist ? "Artist" : "Song")
+                + " database.");
+        }
+        return id;
+    }
+
+
+    /**
+     * Return the current epoch. It turns odd when a key starts to be
+     * removed or the ids start to be renumbered or reloaded, and even
+     * again when that is done. An id looked up since an even epoch was
+     * read is still the key's id while the epoch is unchanged.
+     * 
+     * @return The epoch.
+     */
+    public long epoch() {
+        return epoch;
+    }
+
+
+    /**
+     * Look up the id of an artist or song from any thread, printing
+     * nothing. Only tables of the CONCURRENT mode can be searched while
+     * the writer changes them, so with any other mode nothing is found.
+     * 
+     * @param artist
+     *            Whether the name is an artist, not a song.
+     * @param name
+     *            The name.
+     * @param hash
+     *            The folded sum of the name, from Hash.fold().
+     * @return The node id, or NOT_FOUND.
+     */
+    public int idOf(boolean artist, String name, long hash) {
+        if (mode != SymbolTable.Mode.CONCURRENT) {
+            return SymbolTable.NOT_FOUND;
+        }
+        SymbolTable table = artist ? artistHashTable : songHashTable;
+        return table.hashGet(name, hash);
+    }
+
+
+    /**
+     * Return the sink that the database writes its messages to.
+     * 
+     * @return The output sink.
+     */
+    public OutputSink getOutput() {
+        return output;
     }
 
 }
@@ -0,0 +1,278 @@
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * The class for finding the diameter of one connected component.
+ * Every edge the database inserts has weight 1, so the distances are hop
+ * counts and a breadth first search from a node gives its eccentricity.
+ * The component is given as adjacency arrays: the neighbors of node v are
+ * targets[offsets[v]] to targets[offsets[v + 1] - 1].
+ *
+ * Searches from many nodes are run WORD at a time, one per bit of a long.
+ * Each node keeps a word of the sources that have reached it, and a word
+ * of those that reached it in the latest level, so one pass over the
+ * edges moves all of the searches one level on.
+ *
+ * @author Yu-Kai Lo
+ * @version 1.0
+ */
+public class Diameter {
+    /**
+     * The number of searches run together.
+     */
+    static final int WORD = Long.SIZE;
+
+    private int[] offsets;
+    private int[] targets;
+    private int n;
+
+    /**
+     * Create a diameter finder over a connected component.
+     * 
+     * @param offsets
+     *            The start of each node's neighbors, with one extra entry.
+     * @param targets
+     *            The neighbors of all nodes, one block per node.
+     */
+    public Diameter(int[] offsets, int[] targets) {
+        this.offsets = offsets;
+        this.targets = targets;
+        n = offsets.length - 1;
+    }
+
+
+    /**
+     * Exact mode: run a breadth first search from every node, spread across
+     * all cores, and return the largest eccentricity.
+     * 
+     * @return The diameter of the component.
+     */
+    public int exact() {
+        int diameter = 0;
+        for (int ecc : eccentricities()) {
+            diameter = Math.max(diameter, ecc);
+        }
+        return diameter;
+    }
+
+
+    /**
+     * Return the eccentricity of every node, the hops to the node farthest
+     * from it. The searches run WORD sources at a time, with the groups
+     * spread across all cores.
+     * 
+     * @return The eccentricities, by node.
+     */
+    public int[] eccentricities() {
+        int[] ecc = new int[n];
+        int[] nodes = new int[n];
+        for (int i = 0; i < n; i++) {
+            nodes[i] = i;
+        }
+        ThreadLocal<Bits> scratch = ThreadLocal.withInitial(Bits::new);
+        IntStream.range(0, (n + WORD - 1) / WORD).parallel().forEach(
+            g -> scratch.get().run(nodes, g * WORD, Math.min(WORD, n - g
+                * WORD), ecc));
+        return ecc;
+    }
+
+
+    /**
+     * Fast mode: the iFUB method. A double sweep finds a central node u and
+     * a lower bound. The nodes are then taken level by level, farthest from
+     * u first. Once the lower bound is more than twice the distance of the
+     * next level, no node left can beat it.
+     * 
+     * @return The diameter of the component.
+     */
+    public int fast() {
+        if (n <= 1) {
+            return 0;
+        }
+        Bfs bfs = new Bfs();
+        bfs.run(0);
+        int a = bfs.farthest();
+        int lower = bfs.run(a);
+        int u = bfs.middle();
+
+        int ecc = bfs.run(u);
+        lower = Math.max(lower, ecc);
+        int[] order = bfs.queue.clone();
+        int[] level = new int[n];
+        for (int i = 0; i < n; i++) {
+            level[order[i]] = bfs.dist[order[i]];
+        }
+
+        Bits bits = new Bits();
+        int end = n;
+        for (int i = ecc; i > 0; i--) {
+            if (lower >= 2 * i) {
+                break;
+            }
+            int start = end;
+            while (start > 0 && level[order[start - 1]] == i) {
+                start--;
+            }
+            for (int k = start; k < end; k += WORD) {
+                lower = Math.max(lower, bits.run(order, k, Math.min(WORD,
+                    end - k), null));
+            }
+            if (lower > 2 * (i - 1)) {
+                break;
+            }
+            end = start;
+        }
+        return lower;
+    }
+
+
+    /**
+     * The buffers for one breadth first search. Each thread keeps its own.
+     */
+    private class Bfs {
+        private int[] dist;
+        private int[] parent;
+        private int[] queue;
+        private int last;
+
+        Bfs() {
+            dist = new int[n];
+            parent = new int[n];
+            queue = new int[n];
+            for (int i = 0; i < n; i++) {
+                dist[i] = -1;
+            }
+        }
+
+
+        /**
+         * Search from a node and return its eccentricity. The queue keeps
+         * the nodes in visiting order until the next search.
+         */
+        int run(int source) {
+            for (int i = 0; i < last; i++) {
+                dist[queue[i]] = -1;
+            }
+            int head = 0;
+            int tail = 0;
+            queue[tail++] = source;
+            dist[source] = 0;
+            parent[source] = -1;
+            while (head < tail) {
+                int v = queue[head++];
+                for (int e = offsets[v]; e < offsets[v + 1]; e++) {
+                    int w = targets[e];
+                    if (dist[w] == -1) {
+                        dist[w] = dist[v] + 1;
+                        parent[w] = v;
+                        queue[tail++] = w;
+                    }
+                }
+            }
+            last = tail;
+            return dist[queue[tail - 1]];
+        }
+
+
+        /**
+         * Return the last node reached by the latest search.
+         */
+        int farthest() {
+            return queue[last - 1];
+        }
+
+
+        /**
+         * Return the node halfway along the path from the latest source to
+         * the farthest node.
+         */
+        int middle() {
+            int v = farthest();
+            for (int steps = dist[v] / 2; steps > 0; steps--) {
+                v = parent[v];
+            }
+            return v;
+        }
+    }
+
+
+    /**
+     * The buffers for searches from up to WORD nodes at once. Bit i of a
+     * node's words stands for the search from the i-th source. Each thread
+     * keeps its own.
+     */
+    private class Bits {
+        private long[] seen;
+        private long[] frontier;
+        private long[] next;
+        private int[] active;
+        private int[] reached;
+
+        Bits() {
+            seen = new long[n];
+            frontier = new long[n];
+            next = new long[n];
+            active = new int[n];
+            reached = new int[n];
+        }
+
+
+        /**
+         * Search from some distinct nodes together and return the largest
+         * of their eccentricities. Only nodes some search reached in the
+         * latest level are visited, and each pushes all its searches along
+         * its edges at once.
+         */
+        int run(int[] sources, int from, int count, int[] ecc) {
+            Arrays.fill(seen, 0);
+            int activeCount = 0;
+            for (int i = 0; i < count; i++) {
+                int v = sources[from + i];
+                seen[v] = 1L << i;
+                frontier[v] = 1L << i;
+                active[activeCount++] = v;
+            }
+            int level = 0;
+            int farthest = 0;
+            while (activeCount > 0) {
+                level++;
+                int reachedCount = 0;
+                for (int a = 0; a < activeCount; a++) {
+                    int v = active[a];
+                    long bits = frontier[v];
+                    frontier[v] = 0;
+                    for (int e = offsets[v]; e < offsets[v + 1]; e++) {
+                        int w = targets[e];
+                        long add = bits & ~seen[w];
+                        if (add != 0) {
+                            if (next[w] == 0) {
+                                reached[reachedCount++] = w;
+                            }
+                            next[w] |= add;
+                        }
+                    }
+                }
+                long any = 0;
+                for (int r = 0; r < reachedCount; r++) {
+                    int w = reached[r];
+                    seen[w] |= next[w];
+                    frontier[w] = next[w];
+                    any |= next[w];
+                    next[w] = 0;
+                }
+                if (any != 0) {
+                    farthest = level;
+                }
+                for (; ecc != null && any != 0; any &= any - 1) {
+                    ecc[sources[from + Long.numberOfTrailingZeros(any)]] =
+                        level;
+                }
+                int[] temp = active;
+                active = reached;
+                reached = temp;
+                activeCount = reachedCount;
+            }
+            return farthest;
+        }
+    }
+}
@@ -0,0 +1,128 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import student.TestCase;
+
+/**
+ * This class was designed to test the diameter finder.
+ *
+ * @author Yu-Kai Lo
+ * @version 1.0
+ */
+public class DiameterTest extends TestCase {
+
+    /**
+     * Build a diameter finder from an undirected edge list.
+     * 
+     * @param n
+     *            The number of nodes.
+     * @param edges
+     *            The edges as pairs of nodes.
+     * @return The diameter finder.
+     */
+    private Diameter build(int n, List<int[]> edges) {
+        int[] offsets = new int[n + 1];
+        for (int[] e : edges) {
+            offsets[e[0] + 1]++;
+            offsets[e[1] + 1]++;
+        }
+        for (int i = 0; i < n; i++) {
+            offsets[i + 1] += offsets[i];
+        }
+        int[] fill = offsets.clone();
+        int[] targets = new int[offsets[n]];
+        for (int[] e : edges) {
+            targets[fill[e[0]]++] = e[1];
+            targets[fill[e[1]]++] = e[0];
+        }
+        return new Diameter(offsets, targets);
+    }
+
+
+    /**
+     * This test tries to measure a path, a cycle and a star.
+     */
+    public void testShapes() {
+        List<int[]> path = new ArrayList<int[]>();
+        List<int[]> star = new ArrayList<int[]>();
+        for (int i = 1; i < 50; i++) {
+            path.add(new int[] { i - 1, i });
+            star.add(new int[] { 0, i });
+        }
+        List<int[]> cycle = new ArrayList<int[]>(path);
+        cycle.add(new int[] { 49, 0 });
+
+        assertEquals(49, build(50, path).exact());
+        assertEquals(49, build(50, path).fast());
+        assertEquals(25, build(50, cycle).exact());
+        assertEquals(25, build(50, cycle).fast());
+        assertEquals(2, build(50, star).exact());
+        assertEquals(2, build(50, star).fast());
+        assertEquals(0, build(1, new ArrayList<int[]>()).fast());
+    }
+
+
+    /**
+     * This test tries to compare both modes on random connected graphs.
+     */
+    public void testRandomGraphs() {
+        Random random = new Random(5040);
+        for (int round = 0; round < 200; round++) {
+            int n = 2 + random.nextInt(120);
+            List<int[]> edges = new ArrayList<int[]>();
+            for (int i = 1; i < n; i++) {
+                edges.add(new int[] { random.nextInt(i), i });
+            }
+            int extra = random.nextInt(n / 2 + 1);
+            for (int i = 0; i < extra; i++) {
+                edges.add(new int[] { random.nextInt(n), random.nextInt(n) });
+            }
+            Diameter diameter = build(n, edges);
+            assertEquals(diameter.exact(), diameter.fast());
+        }
+    }
+
+
+    /**
+     * This test tries to find every node's eccentricity on random connected
+     * graphs of more nodes than one group of searches, against plain breadth
+     * first searches.
+     */
+    public void testEccentricities() {
+        Random random = new Random(64);
+        for (int round = 0; round < 20; round++) {
+            int n = 1 + random.nextInt(300);
+            List<int[]> edges = new ArrayList<int[]>();
+            for (int i = 1; i < n; i++) {
+                edges.add(new int[] { random.nextInt(i), i });
+            }
+            int[][] adjacent = new int[n][n];
+            int[] degree = new int[n];
+            for (int[] e : edges) {
+                adjacent[e[0]][degree[e[0]]++] = e[1];
+                adjacent[e[1]][degree[e[1]]++] = e[0];
+            }
+            int[] ecc = build(n, edges).eccentricities();
+            for (int s = 0; s < n; s++) {
+                int[] dist = new int[n];
+                Arrays.fill(dist, -1);
+                int[] queue = new int[n];
+                int tail = 0;
+                queue[tail++] = s;
+                dist[s] = 0;
+                for (int head = 0; head < tail; head++) {
+                    int v = queue[head];
+                    for (int k = 0; k < degree[v]; k++) {
+                        int w = adjacent[v][k];
+                        if (dist[w] == -1) {
+                            dist[w] = dist[v] + 1;
+                            queue[tail++] = w;
+                        }
+                    }
+                }
+                assertEquals(dist[queue[n - 1]], ecc[s]);
+            }
+        }
+    }
+}
@@ -0,0 +1,70 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The EventSink class keeps every output line together with its event, so
+ * the output can be checked or processed as data.
+ *
+ * @author Yu-Kai Lo
+ * @version 1.0
+ */
+public class EventSink implements OutputSink {
+    private List<Event> events;
+    private List<String> lines;
+
+    /**
+     * Create an empty event sink.
+     */
+    public EventSink() {
+        events = new ArrayList<Event>();
+        lines = new ArrayList<String>();
+    }
+
+
+    @Override
+    public void write(Event event, String line) {
+        events.add(event);
+        lines.add(line);
+    }
+
+
+    @Override
+    public void flush() {
+        // Everything is kept in memory.
+    }
+
+
+    /**
+     * Return the number of lines written.
+     * 
+     * @return The number of lines.
+     */
+    public int size() {
+        return lines.size();
+    }
+
+
+    /**
+     * Return the event of a line.
+     * 
+     * @param i
+     *            The index of the line.
+     * @return The event.
+     */
+    public Event event(int i) {
+        return events.get(i);
+    }
+
+
+    /**
+     * Return the text of a line.
+     * 
+     * @param i
+     *            The index of the line.
+     * @return The text.
+     */
+    public String line(int i) {
+        return lines.get(i);
+    }
+
+}
@@ -1,10 +1,41 @@
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
 /**
  * The class for the Floyd algorithm.
  * 
+ * The original constructor fills a whole graph's n by n matrix. The other
+ * one works on a chosen set of vertices, such as one component, in a flat
+ * row-major array. It is filled from the adjacency lists directly and
+ * updated in BLOCK by BLOCK tiles. For each diagonal tile k, the tile
+ * itself is done first, then the tiles in its row and column, then all
+ * the rest. Tiles in each of the last two steps do not depend on each
+ * other, so they run in parallel.
+ * 
  * @author Yu-Kai Lo
  * @version 1.0
  */
 public class Floyd {
+    /**
+     * The distance between two vertices with no path between them.
+     */
+    public static final int INFINITY = Integer.MAX_VALUE;
+
+    /**
+     * The width and height of a tile.
+     */
+    static final int BLOCK = 64;
+
+    /**
+     * The most elements a Java array can be given on common virtual
+     * machines.
+     */
+    static final int MAX_ARRAY = Integer.MAX_VALUE - 8;
+
+    private int[] vertices;
+    private int[] dist; // Row-major, between positions in vertices
+    private int n;
+
     /**
      * Main Floyd algorithm.
      * 
@@ -43,4 +74,124 @@ public class Floyd {
             }
         }
     }
+
+
+    /**
+     * Find the shortest paths between a set of vertices, going through
+     * those vertices only. Edges to vertices outside the set are ignored,
+     * so for a whole component the paths are the same as in the graph.
+     * 
+     * @param g
+     *            The adjacent graph.
+     * @param vertices
+     *            The vertices, sorted.
+     * @throws IllegalArgumentException
+     *             If there are too many vertices for their n * n distances
+     *             to fit in one array.
+     */
+    public Floyd(GraphL g, int[] vertices) {
+        long cells = (long)vertices.length * vertices.length;
+        if (cells > MAX_ARRAY) {
+            throw new IllegalArgumentException(vertices.length
+                + " vertices need " + cells + " distances, more than one"
+                + " array can hold");
+        }
+        this.vertices = vertices;
+        n = vertices.length;
+        dist = new int[(int)cells];
+        Arrays.fill(dist, INFINITY);
+        int[] targets = new int[16];
+        int[] weights = new int[16];
+        for (int i = 0; i < n; i++) {
+            int v = vertices[i];
+            if (g.degree(v) > targets.length) {
+                targets = new int[g.degree(v) * 2];
+                weights = new int[g.degree(v) * 2];
+            }
+            int count = g.copyEdges(v, targets, weights, 0);
+            for (int e = 0; e < count; e++) {
+                int j = Arrays.binarySearch(vertices, targets[e]);
+                if (j >= 0) {
+                    dist[i * n + j] = weights[e];
+                }
+            }
+            dist[i * n + i] = 0;
+        }
+
+        int blocks = (n + BLOCK - 1) / BLOCK;
+        for (int kb = 0; kb < blocks; kb++) {
+            int k = kb;
+            relax(kb, kb, kb);
+            IntStream.range(0, blocks).parallel().forEach(b -> {
+                if (b != k) {
+                    relax(k, b, k);
+                    relax(b, k, k);
+                }
+            });
+            IntStream.range(0, blocks * blocks).parallel().forEach(t -> {
+                int ib = t / blocks;
+                int jb = t % blocks;
+                if (ib != k && jb != k) {
+                    relax(ib, jb, k);
+                }
+            });
+        }
+    }
+
+
+    /**
+     * Shorten the paths in one tile through the vertices of another.
+     * 
+     * @param ib
+     *            The tile's row of tiles.
+     * @param jb
+     *            The tile's column of tiles.
+     * @param kb
+     *            The tile of vertices to go through.
+     */
+    private void relax(int ib, int jb, int kb) {
+        int iEnd = Math.min(n, (ib + 1) * BLOCK);
+        int jEnd = Math.min(n, (jb + 1) * BLOCK);
+        int kEnd = Math.min(n, (kb + 1) * BLOCK);
+        for (int k = kb * BLOCK; k < kEnd; k++) {
+            int kRow = k * n;
+            for (int i = ib * BLOCK; i < iEnd; i++) {
+                int iRow = i * n;
+                int ik = dist[iRow + k];
+                if (ik == INFINITY) {
+                    continue;
+                }
+                for (int j = jb * BLOCK; j < jEnd; j++) {
+                    int kj = dist[kRow + j];
+                    if (kj != INFINITY && ik + kj < dist[iRow + j]) {
+                        dist[iRow + j] = ik + kj;
+                    }
+                }
+            }
+        }
+    }
+
+
+    /**
+     * Return the length of the shortest path between two of the vertices.
+     * 
+     * @param from
+     *            The position of the first vertex in the vertex array.
+     * @param to
+     *            The position of the second vertex in the vertex array.
+     * @return The distance, or INFINITY if there is no path.
+     */
+    public int distance(int from, int to) {
+        return dist[from * n + to];
+    }
+
+
+    /**
+     * Return the vertices the paths were found between.
+     * 
+     * @return The vertices, sorted.
+     */
+    public int[] vertices() {
+        return vertices;
+    }
 }
@@ -0,0 +1,140 @@
+import java.util.Random;
+import student.TestCase;
+
+/**
+ * This class was designed to test the Floyd algorithm.
+ *
+ * @author Yu-Kai Lo
+ * @version 1.0
+ */
+public class FloydTest extends TestCase {
+
+    /**
+     * Build a random weighted graph of several components, with nodes
+     * 0 to n - 1 all given values.
+     *
+     * @param n
+     *            The number of nodes.
+     * @param parts
+     *            The number of node groups edges stay within.
+     * @param edges
+     *            The number of edges.
+     * @param random
+     *            The random source.
+     * @return The graph.
+     */
+    private GraphL build(int n, int parts, int edges, Random random) {
+        GraphL g = new GraphL();
+        g.init(n);
+        for (int v = 0; v < n; v++) {
+            g.setValue(v, String.valueOf(v));
+        }
+        for (int e = 0; e < edges; e++) {
+            int part = random.nextInt(parts);
+            int a = random.nextInt(n / parts) * parts + part;
+            int b = random.nextInt(n / parts) * parts + part;
+            if (a != b) {
+                g.addEdge(a, b, 1 + random.nextInt(20));
+            }
+        }
+        return g;
+    }
+
+
+    /**
+     * Check the blocked Floyd on each component against the original one
+     * over the whole graph.
+     *
+     * @param g
+     *            The graph.
+     */
+    private void check(GraphL g) {
+        int n = g.nodeCount();
+        int[][] d = new int[n][n];
+        new Floyd(g, d);
+        Components components = new Components(g);
+        for (int v = 0; v < n; v++) {
+            if (g.getValue(v) == null) {
+                continue;
+            }
+            int[] members = components.members(v);
+            if (members[0] != v) {
+                continue;
+            }
+            Floyd floyd = new Floyd(g, members);
+            assertEquals(members, floyd.vertices());
+            for (int i = 0; i < members.length; i++) {
+                for (int j = 0; j < members.length; j++) {
+                    assertEquals(d[members[i]][members[j]], floyd.distance(i,
+                        j));
+                }
+            }
+        }
+    }
+
+
+    /**
+     * This test tries small graphs with one-way edges, so some vertices
+     * of a component cannot reach others.
+     */
+    public void testSmall() {
+        Random random = new Random(23);
+        for (int round = 0; round < 20; round++) {
+            check(build(24, 3, 30, random));
+        }
+    }
+
+
+    /**
+     * This test tries components spanning several tiles, with a size that
+     * is not a multiple of the tile size.
+     */
+    public void testTiles() {
+        Random random = new Random(230);
+        check(build(2 * (Floyd.BLOCK * 3 + 5), 2, 3000, random));
+    }
+
+
+    /**
+     * This test tries the paths of a single vertex and of a chain.
+     */
+    public void testChain() {
+        GraphL g = new GraphL();
+        g.init(4);
+        for (int v = 0; v < 4; v++) {
+            g.setValue(v, String.valueOf(v));
+        }
+        Floyd floyd = new Floyd(g, new int[] { 2 });
+        assertEquals(0, floyd.distance(0, 0));
+        g.addEdge(0, 1, 5);
+        g.addEdge(1, 2, 7);
+        g.addEdge(2, 3, 1);
+        g.addEdge(0, 3, 20);
+        floyd = new Floyd(g, new int[] { 0, 1, 2, 3 });
+        assertEquals(13, floyd.distance(0, 3));
+        assertEquals(Floyd.INFINITY, floyd.distance(3, 0));
+        floyd = new Floyd(g, new int[] { 0, 3 });
+        assertEquals(20, floyd.distance(0, 1));
+    }
+
+
+    /**
+     * This test gives Floyd more vertices than their distances can fit in
+     * one array, which must fail before anything is allocated for them.
+     */
+    public void testTooManyVertices() {
+        GraphL g = new GraphL();
+        g.init(1);
+        int[] vertices = new int[46341];
+        Exception thrown = null;
+        try {
+            new Floyd(g, vertices);
+        }
+        catch (IllegalArgumentException e) {
+            thrown = e;
+        }
+        assertNotNull(thrown);
+        assertEquals("46341 vertices need 2147488281 distances, more than "
+            + "one array can hold", thrown.getMessage());
+    }
+}
@@ -0,0 +1,340 @@
+import java.util.Arrays;
+
+/**
+ * A graph stored in compressed sparse row form. The neighbors of node v
+ * sit in targets[offsets[v]] to targets[offsets[v + 1] - 1], sorted, with
+ * their weights at the same places in weights. Scans run over contiguous
+ * memory, so this is the form used for analysis such as printGraph.
+ * Adding or removing an edge shifts the arrays, so it is best built once
+ * from a GraphL snapshot and then only read.
+ *
+ * @author Yu-Kai Lo
+ * @version 1.0
+ */
+public class GraphCSR implements Graph {
+    private int[] offsets;
+    private int[] targets;
+    private int[] weights;
+    private String[] nodeValues;
+    private int numEdge;
+    private int n;
+
+    /**
+     * No real constructor needed.
+     */
+    GraphCSR() {
+        // No real constructor needed.
+    }
+
+
+    /**
+     * Freeze a linked list graph into compressed sparse row form.
+     * 
+     * @param g
+     *            The graph to copy.
+     */
+    GraphCSR(GraphL g) {
+        n = g.nodeCount();
+        numEdge = g.edgeCount();
+        offsets = new int[n + 1];
+        targets = new int[numEdge];
+        weights = new int[numEdge];
+        nodeValues = new String[n];
+        for (int v = 0; v < n; v++) {
+            offsets[v + 1] = g.copyEdges(v, targets, weights, offsets[v]);
+            nodeValues[v] = g.getValue(v);
+        }
+    }
+
+
+    @Override
+    public void init(int size) {
+        n = size;
+        offsets = new int[n + 1];
+        targets = new int[n];
+        weights = new int[n];
+        nodeValues = new String[n];
+        numEdge = 0;
+    }
+
+
+    @Override
+    public int nodeCount() {
+        return n;
+    }
+
+
+    @Override
+    public int edgeCount() {
+        return numEdge;
+    }
+
+
+    @Override
+    public String getValue(int v) {
+        return nodeValues[v];
+    }
+
+
+    @Override
+    public void setValue(int v, String val) {
+        nodeValues[v] = val;
+    }
+
+
+    /**
+     * Return the position of w in v's neighbors, or where it would go as
+     * -(position + 1).
+     * 
+     * @param v
+     *            The first node.
+     * @param w
+     *            The second node.
+     * @return The position in targets.
+     */
+    private int find(int v, int w) {
+        return Arrays.binarySearch(targets, offsets[v], offsets[v + 1], w);
+    }
+
+
+    @Override
+    public void addEdge(int v, int w, int wgt) {
+        if (v >= n || w >= n) {
+            resize(Math.max(v, w) + 1);
+        }
+        if (wgt == 0) {
+            return;
+        }
+        int pos = find(v, w);
+        if (pos >= 0) {
+            weights[pos] = wgt;
+            return;
+        }
+        pos = -pos - 1;
+        if (numEdge == targets.length) {
+            int newLength = Math.max(1, numEdge * 2);
+            targets = Arrays.copyOf(targets, newLength);
+            weights = Arrays.copyOf(weights, newLength);
+        }
+        System.arraycopy(targets, pos, targets, pos + 1, numEdge - pos);
+        System.arraycopy(weights, pos, weights, pos + 1, numEdge - pos);
+        targets[pos] = w;
+        weights[pos] = wgt;
+        numEdge++;
+        for (int i = v + 1; i <= n; i++) {
+            offsets[i]++;
+        }
+    }
+
+
+    @Override
+    public int weight(int v, int w) {
+        int pos = find(v, w);
+        return pos < 0 ? 0 : weights[pos];
+    }
+
+
+    @Override
+    public void removeEdge(int v, int w) {
+        int pos = find(v, w);
+        if (pos < 0) {
+            return;
+        }
+        System.arraycopy(targets, pos + 1, targets, pos, numEdge - pos - 1);
+        System.arraycopy(weights, pos + 1, weights, pos, numEdge - pos - 1);
+        numEdge--;
+        for (int i = v + 1; i <= n; i++) {
+            offsets[i]--;
+        }
+    }
+
+
+    @Override
+    public boolean hasEdge(int v, int w) {
+        return weight(v, w) != 0;
+    }
+
+
+    @Override
+    public int[] neighbors(int v) {
+        return Arrays.copyOfRange(targets, offsets[v], offsets[v + 1]);
+    }
+
+
+    /**
+     * Grow the graph to hold at least the given number of nodes.
+     * 
+     * @param minSize
+     *            The number of nodes needed.
+     */
+    private void resize(int minSize) {
+        int newSize = Math.max(minSize, n * 2);
+        offsets = Arrays.copyOf(offsets, newSize + 1);
+        for (int i = n + 1; i <= newSize; i++) {
+            offsets[i] = offsets[n];
+        }
+        nodeValues = Arrays.copyOf(nodeValues, newSize);
+        n = newSize;
+    }
+
+
+    /**
+     * Print the graph.
+     */
+    public void printGraph() {
+        printGraph(new StreamSink(System.out, true));
+    }
+
+
+    /**
+     * Print the graph to a sink.
+     * 
+     * @param output
+     *            The sink to write to.
+     */
+    public void printGraph(OutputSink output) {
+        int[] found = stats();
+        printComponents(output, found[0], found[1], found[2]);
+    }
+
+
+    /**
+     * Work out the figures that printGraph prints.
+     * 
+     * @return The number of components, the size of the largest and its
+     *         diameter.
+     */
+    int[] stats() {
+        ParPtrTree unionFind = connectComponents();
+        int[] componentSizes = new int[n];
+        int[] roots = new int[n];
+        for (int i = 0; i < n; i++) {
+            roots[i] = unionFind.find(i);
+        }
+
+        int componentCount = 0;
+        for (int i = 0; i < n; i++) {
+            if (offsets[i] != offsets[i + 1] && roots[i] == i) {
+                componentCount++;
+            }
+            else if (isIsolatedNode(i)) {
+                componentCount++;
+            }
+        }
+
+        for (int i = 0; i < n; i++) {
+            if (nodeValues[i] != null) {
+                componentSizes[roots[i]]++;
+            }
+        }
+
+        int maxSize = 0;
+        for (int i = 0; i < n; i++) {
+            maxSize = Math.max(maxSize, componentSizes[i]);
+        }
+
+        int diameter = 0;
+        for (int i = 0; i < n; i++) {
+            if (roots[i] == i && maxSize > 0
+                && componentSizes[i] == maxSize) {
+                diameter = Math.max(diameter, componentDiameter(roots, i,
+                    maxSize));
+            }
+        }
+
+        return new int[] { componentCount, maxSize, diameter };
+    }
+
+
+    /**
+     * Print the component summary of a graph.
+     * 
+     * @param output
+     *            The sink to write to.
+     * @param componentCount
+     *            The number of connected components.
+     * @param maxSize
+     *            The number of nodes in the largest component.
+     * @param diameter
+     *            The diameter of the largest component.
+     */
+    static void printComponents(OutputSink output, int componentCount,
+        int maxSize, int diameter) {
+        output.write(OutputSink.Event.GRAPH, "There are " + componentCount
+            + " connected components");
+        output.write(OutputSink.Event.GRAPH,
+            "The largest connected component has " + maxSize + " elements");
+        output.write(OutputSink.Event.GRAPH,
+            "The diameter of the largest component is " + diameter);
+    }
+
+
+    /**
+     * Union the two ends of every edge in the graph. The edge arrays are
+     * walked once, so the components are found in O(V + E).
+     * 
+     * @return The parent pointer tree holding the components.
+     */
+    private ParPtrTree connectComponents() {
+        ParPtrTree unionFind = new ParPtrTree(n);
+        for (int v = 0; v < n; v++) {
+            for (int e = offsets[v]; e < offsets[v + 1]; e++) {
+                unionFind.union(v, targets[e]);
+            }
+        }
+        return unionFind;
+    }
+
+
+    /**
+     * Find the diameter of one component. Its nodes are numbered densely
+     * from zero and their edges copied into arrays of their own, which are
+     * then searched breadth first.
+     * 
+     * @param roots
+     *            The component root of every node.
+     * @param root
+     *            The root of the component to measure.
+     * @param componentSize
+     *            The number of nodes in the component.
+     * @return The diameter of the component.
+     */
+    private int componentDiameter(int[] roots, int root, int componentSize) {
+        int[] members = new int[componentSize];
+        int[] local = new int[n];
+        int count = 0;
+        int edges = 0;
+        for (int i = 0; i < n; i++) {
+            if (roots[i] == root && nodeValues[i] != null) {
+                local[i] = count;
+                members[count++] = i;
+                edges += offsets[i + 1] - offsets[i];
+            }
+        }
+
+        int[] subOffsets = new int[count + 1];
+        int[] subTargets = new int[edges];
+        for (int k = 0; k < count; k++) {
+            int v = members[k];
+            subOffsets[k + 1] = subOffsets[k];
+            for (int e = offsets[v]; e < offsets[v + 1]; e++) {
+                subTargets[subOffsets[k + 1]++] = local[targets[e]];
+            }
+        }
+        return new Diameter(subOffsets, subTargets).fast();
+    }
+
+
+    /**
+     * Check whether is isolated node.
+     * 
+     * @param nodeId
+     *            The node to check.
+     * @return Return true if it is isolated.
+     */
+    private boolean isIsolatedNode(int nodeId) {
+        return nodeValues[nodeId] != null
+            && offsets[nodeId] == offsets[nodeId + 1];
+    }
+
+}
@@ -0,0 +1,65 @@
+import static org.junit.Assert.assertArrayEquals;
+import org.junit.Test;
+
+/**
+ * This class was designed to run the graph tests against the compressed
+ * sparse row graph.
+ *
+ * @author Yu-Kai Lo
+ * @version 1.0
+ */
+public class GraphCSRTest extends GraphTestCase {
+
+    @Override
+    protected Graph createGraph() {
+        return new GraphCSR();
+    }
+
+
+    /**
+     * This test tries to freeze a linked list graph and read it back.
+     */
+    @Test
+    public void testFreeze() {
+        GraphL list = new GraphL();
+        list.init(10);
+        list.setValue(0, "0");
+        list.setValue(1, "1");
+        list.setValue(4, "4");
+        list.addEdge(0, 4, 1);
+        list.addEdge(0, 1, 2);
+        list.addEdge(4, 0, 1);
+        list.addEdge(1, 0, 2);
+
+        GraphCSR csr = new GraphCSR(list);
+        assertEquals(list.nodeCount(), csr.nodeCount());
+        assertEquals(4, csr.edgeCount());
+        assertEquals("4", csr.getValue(4));
+        assertNull(csr.getValue(5));
+        assertEquals(2, csr.weight(0, 1));
+        assertFalse(csr.hasEdge(1, 4));
+        int[] expectedOutput = { 1, 4 };
+        assertArrayEquals(expectedOutput, csr.neighbors(0));
+
+        csr.printGraph();
+        assertTrue(systemOut().getHistory().endsWith(
+            "There are 1 connected components\n"
+                + "The largest connected component has 3 elements\n"
+                + "The diameter of the largest component is 2\n"));
+    }
+
+
+    /**
+     * This test tries to add edges past the initial number of nodes.
+     */
+    @Test
+    public void testGrow() {
+        Graph csr = createGraph();
+        csr.init(2);
+        csr.addEdge(0, 5, 3);
+        csr.addEdge(5, 0, 3);
+        assertTrue(csr.nodeCount() >= 6);
+        assertEquals(3, csr.weight(5, 0));
+        assertEquals(2, csr.edgeCount());
+    }
+}
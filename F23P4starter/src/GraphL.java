@@ -1,5 +1,13 @@
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
 /**
- * The main graph class
+ * The main graph class. Each node keeps its neighbors in a sorted linked
+ * list. Once a node has more than ARRAY_THRESHOLD neighbors, its list is
+ * moved into a sorted EdgeArray, so edge lookups on hub nodes take
+ * O(log degree) instead of a walk down the list.
  *
  * @author Yu-Kai Lo
  * @version 1.0
@@ -22,11 +30,70 @@ public class GraphL implements Graph {
         }
     }
 
+    /**
+     * The EdgeArray class that keeps the neighbors of a high degree node in
+     * sorted growable arrays.
+     */
+    private static class EdgeArray {
+        private int[] vertices;
+        private int[] weights;
+        private int count;
+
+        EdgeArray(int length) {
+            vertices = new int[length];
+            weights = new int[length];
+        }
+
+
+        /**
+         * Return the position of w, or where it would go as -(pos + 1).
+         */
+        int find(int w) {
+            return Arrays.binarySearch(vertices, 0, count, w);
+        }
+
+
+        /**
+         * Put w at the given position, shifting the rest along.
+         */
+        void insert(int pos, int w, int wgt) {
+            if (count == vertices.length) {
+                vertices = Arrays.copyOf(vertices, count * 2);
+                weights = Arrays.copyOf(weights, count * 2);
+            }
+            System.arraycopy(vertices, pos, vertices, pos + 1, count - pos);
+            System.arraycopy(weights, pos, weights, pos + 1, count - pos);
+            vertices[pos] = w;
+            weights[pos] = wgt;
+            count++;
+        }
+
+
+        /**
+         * Take out the neighbor at the given position.
+         */
+        void remove(int pos) {
+            System.arraycopy(vertices, pos + 1, vertices, pos, count - pos
+                - 1);
+            System.arraycopy(weights, pos + 1, weights, pos, count - pos - 1);
+            count--;
+        }
+    }
+
+    /**
+     * The degree past which a node's list is moved into an EdgeArray.
+     */
+    static final int ARRAY_THRESHOLD = 16;
+
     private Edge[] nodeArray;
+    private EdgeArray[] edgeArrays; // Null while a node is still a list
+    private int[] degree;
     private String[] nodeValues;
     private int numEdge;
     private int size;
     private int capacity;
+    private int initCapacity;
+    private long version; // Bumped by every change
 
     /**
      * No real constructor needed.
@@ -38,15 +105,19 @@ public class GraphL implements Graph {
 
     @Override
     public void init(int n) {
+        version++;
         nodeArray = new Edge[n];
         // List headers;
         for (int i = 0; i < n; i++) {
             nodeArray[i] = new Edge(-1, -1, null, null);
         }
         nodeValues = new String[n];
+        edgeArrays = new EdgeArray[n];
+        degree = new int[n];
         numEdge = 0;
         size = 0;
         capacity = n;
+        initCapacity = n;
     }
 
 
@@ -62,6 +133,29 @@ public class GraphL implements Graph {
     }
 
 
+    /**
+     * Return the number of changes made to the graph so far. Anything
+     * worked out from the graph is still right while this stays the same.
+     * 
+     * @return The version.
+     */
+    long version() {
+        return version;
+    }
+
+
+    /**
+     * Return the number of neighbors of a node.
+     * 
+     * @param v
+     *            The node.
+     * @return The degree.
+     */
+    int degree(int v) {
+        return degree[v];
+    }
+
+
     @Override
     public String getValue(int v) {
         return nodeValues[v];
@@ -70,6 +164,7 @@ public class GraphL implements Graph {
 
     @Override
     public void setValue(int v, String val) {
+        version++;
         nodeValues[v] = val;
     }
 
@@ -95,6 +190,7 @@ public class GraphL implements Graph {
 
     @Override
     public void addEdge(int v, int w, int wgt) {
+        version++;
         if (v >= size || w >= size) {
             size = Math.max(v, w) + 1;
             resize();
@@ -102,6 +198,18 @@ public class GraphL implements Graph {
         if (wgt == 0) {
             return;
         }
+        if (edgeArrays[v] != null) {
+            int pos = edgeArrays[v].find(w);
+            if (pos >= 0) {
+                edgeArrays[v].weights[pos] = wgt;
+            }
+            else {
+                edgeArrays[v].insert(-pos - 1, w, wgt);
+                numEdge++;
+                degree[v]++;
+            }
+            return;
+        }
         Edge curr = find(v, w);
         if ((curr.next != null) && (curr.next.vertex == w)) {
             curr.next.weight = wgt;
@@ -112,12 +220,34 @@ public class GraphL implements Graph {
             if (curr.next.next != null) {
                 curr.next.next.prev = curr.next;
             }
+            degree[v]++;
+            if (degree[v] > ARRAY_THRESHOLD) {
+                toEdgeArray(v);
+            }
         }
     }
 
 
+    /**
+     * Move the neighbor list of a node into an EdgeArray.
+     * 
+     * @param v
+     *            The node.
+     */
+    private void toEdgeArray(int v) {
+        EdgeArray edges = new EdgeArray(degree[v] * 2);
+        edges.count = copyEdges(v, edges.vertices, edges.weights, 0);
+        nodeArray[v].next = null;
+        edgeArrays[v] = edges;
+    }
+
+
     @Override
     public int weight(int v, int w) {
+        if (edgeArrays[v] != null) {
+            int pos = edgeArrays[v].find(w);
+            return pos < 0 ? 0 : edgeArrays[v].weights[pos];
+        }
         Edge curr = find(v, w);
         if ((curr.next == null) || (curr.next.vertex != w)) {
             return 0;
@@ -130,6 +260,16 @@ public class GraphL implements Graph {
 
     @Override
     public void removeEdge(int v, int w) {
+        version++;
+        if (edgeArrays[v] != null) {
+            int pos = edgeArrays[v].find(w);
+            if (pos >= 0) {
+                edgeArrays[v].remove(pos);
+                numEdge--;
+                degree[v]--;
+            }
+            return;
+        }
         Edge curr = find(v, w);
         if ((curr.next == null) || curr.next.vertex != w) {
             return;
@@ -141,6 +281,7 @@ public class GraphL implements Graph {
             }
         }
         numEdge--;
+        degree[v]--;
     }
 
 
@@ -152,6 +293,9 @@ public class GraphL implements Graph {
 
     @Override
     public int[] neighbors(int v) {
+        if (edgeArrays[v] != null) {
+            return Arrays.copyOf(edgeArrays[v].vertices, degree[v]);
+        }
         int cnt = 0;
         Edge curr;
         for (curr = nodeArray[v].next; curr != null; curr = curr.next) {
@@ -166,6 +310,83 @@ public class GraphL implements Graph {
     }
 
 
+    /**
+     * Remove a node's edges in both directions. Only the node's own
+     * neighbors are visited, so the cost follows its degree rather than
+     * the size of the graph.
+     * 
+     * @param v
+     *            The node to clear.
+     */
+    public void removeVertex(int v) {
+        version++;
+        int[] adjacent = neighbors(v);
+        for (int i = 0; i < adjacent.length; i++) {
+            removeEdge(adjacent[i], v);
+        }
+        numEdge -= degree[v];
+        nodeArray[v].next = null;
+        edgeArrays[v] = null;
+        degree[v] = 0;
+    }
+
+
+    /**
+     * Renumber the nodes that have a value densely from zero, keeping their
+     * order, and shrink the arrays to fit. Dead slots and their headers are
+     * dropped. Since the order is kept, every neighbor list stays sorted and
+     * only the vertex numbers in it need rewriting.
+     * 
+     * @return The new id of every old node, or -1 for dropped nodes.
+     */
+    public int[] compact() {
+        version++;
+        int[] newIds = new int[nodeArray.length];
+        int live = 0;
+        for (int i = 0; i < nodeArray.length; i++) {
+            newIds[i] = nodeValues[i] != null ? live++ : -1;
+        }
+
+        int newCapacity = initCapacity;
+        while (live > newCapacity / 2) {
+            newCapacity *= 2;
+        }
+        Edge[] newNodeArray = new Edge[newCapacity];
+        String[] newNodeValues = new String[newCapacity];
+        EdgeArray[] newEdgeArrays = new EdgeArray[newCapacity];
+        int[] newDegree = new int[newCapacity];
+        for (int v = 0; v < nodeArray.length; v++) {
+            int nv = newIds[v];
+            if (nv < 0) {
+                continue;
+            }
+            EdgeArray edges = edgeArrays[v];
+            for (int i = 0; edges != null && i < edges.count; i++) {
+                edges.vertices[i] = newIds[edges.vertices[i]];
+            }
+            for (Edge curr = nodeArray[v].next; curr != null;
+                curr = curr.next) {
+                curr.vertex = newIds[curr.vertex];
+            }
+            newNodeArray[nv] = nodeArray[v];
+            newNodeValues[nv] = nodeValues[v];
+            newEdgeArrays[nv] = edgeArrays[v];
+            newDegree[nv] = degree[v];
+        }
+        for (int i = live; i < newCapacity; i++) {
+            newNodeArray[i] = new Edge(-1, -1, null, null);
+        }
+
+        nodeArray = newNodeArray;
+        nodeValues = newNodeValues;
+        edgeArrays = newEdgeArrays;
+        degree = newDegree;
+        size = live;
+        capacity = newCapacity;
+        return newIds;
+    }
+
+
     /**
      * Resize the graph.
      */
@@ -184,6 +405,8 @@ public class GraphL implements Graph {
             }
             nodeArray = newNodeArray;
             nodeValues = newNodeValues;
+            edgeArrays = Arrays.copyOf(edgeArrays, capacity);
+            degree = Arrays.copyOf(degree, capacity);
             for (int i = size; i < capacity; i++) {
                 nodeArray[i] = new Edge(-1, -1, null, null);
             }
@@ -193,83 +416,189 @@ public class GraphL implements Graph {
 
 
     /**
-     * Print the graph.
+     * Copy the edges of a node into arrays, in neighbor order.
+     * 
+     * @param v
+     *            The node.
+     * @param targets
+     *            The array to receive the neighbors.
+     * @param weights
+     *            The array to receive the weights.
+     * @param pos
+     *            The position to start writing at.
+     * @return The position after the last edge written.
+     */
+    int copyEdges(int v, int[] targets, int[] weights, int pos) {
+        if (edgeArrays[v] != null) {
+            System.arraycopy(edgeArrays[v].vertices, 0, targets, pos,
+                degree[v]);
+            System.arraycopy(edgeArrays[v].weights, 0, weights, pos,
+                degree[v]);
+            return pos + degree[v];
+        }
+        for (Edge curr = nodeArray[v].next; curr != null; curr = curr.next) {
+            targets[pos] = curr.vertex;
+            weights[pos] = curr.weight;
+            pos++;
+        }
+        return pos;
+    }
+
+
+    /**
+     * Print the graph on its own. The graph is first frozen into compressed
+     * sparse row form so the component and diameter scans run over plain
+     * arrays. The database prints from its Components instead, which keeps
+     * the figures up to date.
      */
     public void printGraph() {
-        ParPtrTree unionFind = new ParPtrTree(nodeCount());
-        int[] componentSizes = new int[nodeCount()];
+        printGraph(new StreamSink(System.out, true));
+    }
 
-        for (int i = 0; i < nodeCount(); i++) {
-            for (int j = 0; j < nodeCount(); j++) {
-                if (hasEdge(i, j)) {
-                    unionFind.union(i, j);
-                }
-            }
-        }
 
-        int componentCount = 0;
-        boolean[] visited = new boolean[nodeCount()];
+    /**
+     * Print the graph to a sink.
+     * 
+     * @param output
+     *            The sink to write to.
+     */
+    public void printGraph(OutputSink output) {
+        new GraphCSR(this).printGraph(output);
+    }
 
-        for (int i = 0; i < nodeArray.length; i++) {
-            if (nodeArray[i].next != null) {
-                visited[i] = true;
+
+    /**
+     * Make room for nodes up to the given count, doubling as addEdge does.
+     * 
+     * @param n
+     *            The number of nodes that must fit.
+     */
+    void ensureNodes(int n) {
+        if (n > size) {
+            version++;
+            size = n;
+            while (size > capacity / 2) {
+                resize();
             }
         }
+    }
 
-        for (int i = 0; i < nodeArray.length; i++) {
-            if (visited[i] && unionFind.find(i) == i) {
-                componentCount++;
+
+    /**
+     * Add a sorted run of new weight 1 edges from one node, merging them
+     * with the node's own sorted edges and rebuilding its list or array in
+     * one pass. None of the new targets may be a neighbor already.
+     * 
+     * @param v
+     *            The node.
+     * @param targets
+     *            The new targets, sorted.
+     * @param from
+     *            The first new target.
+     * @param to
+     *            One past the last new target.
+     */
+    void mergeEdges(int v, int[] targets, int from, int to) {
+        version++;
+        int old = degree[v];
+        int count = old + to - from;
+        int[] oldTargets = new int[old];
+        int[] oldWeights = new int[old];
+        copyEdges(v, oldTargets, oldWeights, 0);
+        EdgeArray merged = new EdgeArray(Math.max(count * 2, 1));
+        int i = 0;
+        int k = from;
+        while (i < old || k < to) {
+            if (k == to || (i < old && oldTargets[i] < targets[k])) {
+                merged.vertices[merged.count] = oldTargets[i];
+                merged.weights[merged.count++] = oldWeights[i++];
             }
-            else if (isIsolatedNode(i)) {
-                componentCount++;
+            else {
+                merged.vertices[merged.count] = targets[k++];
+                merged.weights[merged.count++] = 1;
             }
         }
-
-        for (int i = 0; i < nodeCount(); i++) {
-            if (nodeValues[i] != null) {
-                int root = unionFind.find(i);
-                componentSizes[root]++;
-            }
+        nodeArray[v].next = null;
+        edgeArrays[v] = null;
+        if (count > ARRAY_THRESHOLD) {
+            edgeArrays[v] = merged;
         }
-
-        int maxSize = 0;
-        for (int i = 0; i < componentSizes.length; i++) {
-            int currentSize = componentSizes[i];
-            maxSize = Math.max(maxSize, currentSize);
+        else {
+            Edge tail = nodeArray[v];
+            for (i = 0; i < count; i++) {
+                tail.next = new Edge(merged.vertices[i], merged.weights[i],
+                    tail, null);
+                tail = tail.next;
+            }
         }
+        degree[v] = count;
+        numEdge += to - from;
+    }
 
-        int[][] d = new int[nodeCount()][nodeCount()];
-        new Floyd(this, d);
 
-        int diameter = 0;
-        for (int i = 0; i < nodeCount(); i++) {
-            for (int j = 0; j < nodeCount(); j++) {
-                if (unionFind.find(i) == unionFind.find(j)
-                    && d[i][j] < Integer.MAX_VALUE) {
-                    diameter = Math.max(diameter, d[i][j]);
-                }
+    /**
+     * Write the nodes, their values and their sorted edges to a snapshot.
+     * 
+     * @param out
+     *            The snapshot body.
+     * @throws IOException
+     */
+    void save(DataOutput out) throws IOException {
+        out.writeInt(nodeArray.length);
+        out.writeInt(size);
+        out.writeInt(initCapacity);
+        out.writeInt(numEdge);
+        int[] targets = new int[16];
+        int[] weights = new int[16];
+        for (int v = 0; v < nodeArray.length; v++) {
+            Snapshot.writeString(out, nodeValues[v]);
+            if (degree[v] > targets.length) {
+                targets = new int[degree[v] * 2];
+                weights = new int[degree[v] * 2];
+            }
+            int count = copyEdges(v, targets, weights, 0);
+            out.writeInt(count);
+            for (int i = 0; i < count; i++) {
+                out.writeInt(targets[i]);
+                out.writeInt(weights[i]);
             }
         }
-
-        System.out.println("There are " + componentCount
-            + " connected components");
-        System.out.println("The largest connected component has " + maxSize
-            + " elements");
-        System.out.println("The diameter of the largest component is "
-            + diameter);
     }
 
 
     /**
-     * Check whether is isolated node.
+     * Replace the whole graph with one read from a snapshot. Each node's
+     * edges are already sorted, so they are linked or copied in as they
+     * come instead of being inserted one at a time.
      * 
-     * @param nodeId
-     *            The node to check.
-     * @return Return true if it is isolated.
+     * @param in
+     *            The snapshot body, positioned at the graph.
      */
-    private boolean isIsolatedNode(int nodeId) {
-        return nodeValues[nodeId] != null && (nodeArray[nodeId].next == null
-            || nodeArray[nodeId].next.vertex == -1);
+    void load(ByteBuffer in) {
+        init(in.getInt());
+        size = in.getInt();
+        initCapacity = in.getInt();
+        numEdge = in.getInt();
+        for (int v = 0; v < nodeArray.length; v++) {
+            nodeValues[v] = Snapshot.readString(in);
+            int count = in.getInt();
+            degree[v] = count;
+            if (count > ARRAY_THRESHOLD) {
+                EdgeArray edges = new EdgeArray(count * 2);
+                for (int i = 0; i < count; i++) {
+                    edges.vertices[i] = in.getInt();
+                    edges.weights[i] = in.getInt();
+                }
+                edges.count = count;
+                edgeArrays[v] = edges;
+                continue;
+            }
+            Edge tail = nodeArray[v];
+            for (int i = 0; i < count; i++) {
+                int w = in.getInt();
+                tail.next = new Edge(w, in.getInt(), tail, null);
+                tail = tail.next;
+            }
+        }
     }
-
 }
@@ -0,0 +1,14 @@
+/**
+ * This class was designed to run the graph tests against the linked list
+ * graph.
+ *
+ * @author Yu-Kai Lo
+ * @version 1.0
+ */
+public class GraphLTest extends GraphTestCase {
+
+    @Override
+    protected Graph createGraph() {
+        return new GraphL();
+    }
+}
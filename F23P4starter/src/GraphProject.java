@@ -2,6 +2,24 @@
 /**
  * Main for Graph project (CS3114/CS5040 Fall 2023 Project 4).
  * Usage: java GraphProject <init-hash-size> <command-file>
+ * [-log <log-file>] [-sync <n>] [-load <snapshot>] [-save <snapshot>]
+ * [-threads <n>] [-bulk] [-mapped]
+ * With -log the commands in a write-ahead log are replayed first and
+ * every change after that is logged, forced to disk n commands at a time
+ * (1 by default). With -load the database then starts from a snapshot
+ * before the commands run, and with -save it is written to a snapshot
+ * after they finish. Given both -log and -load, the snapshot is only
+ * loaded into an empty log, which then records the load; a log that
+ * already holds commands rebuilds the database itself, and the snapshot
+ * is not loaded over it. With -threads the command file is read by a
+ * pipeline that splits the inserts on n worker threads, which also look
+ * up the ids of keys already held in CONCURRENT tables. Otherwise, with
+ * -bulk each run of inserts is handed to the database at once. With
+ * -mapped the hash tables keep their slots and keys in memory mapped
+ * temporary files instead of the heap; the graph stays on the heap.
+ * -threads cannot be combined with -bulk or -mapped. An unknown option, a
+ * missing or malformed value, or such a combination prints the usage to
+ * standard error and runs nothing.
  *
  * @author Yu-Kai Lo
  * @version 1.0
@@ -38,11 +56,137 @@ public class GraphProject {
         if (args == null) {
             throw new IllegalArgumentException("args cannot be null");
         }
-        int hashTableSize = Integer.parseInt(args[0]);
+        if (args.length < 2) {
+            usage("a hash table size and a command file are needed");
+            return;
+        }
+        int hashTableSize = number(args[0]);
+        if (hashTableSize < 1) {
+            usage("the hash table size must be a positive number");
+            return;
+        }
         String inputFile = args[1];
 
-        Database database = new Database(hashTableSize);
-        Parser parser = new Parser(database);
-        parser.fileparser(inputFile);
+        OutputSink output = new StreamSink(System.out, false);
+        String log = null;
+        int sync = 1;
+        String load = null;
+        String save = null;
+        int threads = 0;
+        boolean bulk = false;
+        boolean mapped = false;
+        for (int i = 2; i < args.length; i++) {
+            String option = args[i];
+            if (option.equals("-bulk")) {
+                bulk = true;
+                continue;
+            }
+            if (option.equals("-mapped")) {
+                mapped = true;
+                continue;
+            }
+            if (!option.equals("-load") && !option.equals("-save")
+                && !option.equals("-log") && !option.equals("-sync")
+                && !option.equals("-threads")) {
+                usage("unknown option " + option);
+                return;
+            }
+            if (i + 1 == args.length) {
+                usage(option + " needs a value");
+                return;
+            }
+            String value = args[++i];
+            if (option.equals("-load")) {
+                load = value;
+            }
+            else if (option.equals("-save")) {
+                save = value;
+            }
+            else if (option.equals("-log")) {
+                log = value;
+            }
+            else if (option.equals("-sync")) {
+                sync = number(value);
+            }
+            else {
+                threads = number(value);
+            }
+            if (sync < 1 || threads < 0 || (threads == 0 && option.equals(
+                "-threads"))) {
+                usage(option + " needs a positive number");
+                return;
+            }
+        }
+        if (threads > 0 && (bulk || mapped)) {
+            usage("-threads cannot be combined with "
+                + (bulk ? "-bulk" : "-mapped"));
+            return;
+        }
+        SymbolTable.Mode mode = SymbolTable.Mode.RECORDS;
+        if (threads > 0) {
+            mode = SymbolTable.Mode.CONCURRENT;
+        }
+        else if (mapped) {
+            mode = SymbolTable.Mode.MAPPED;
+        }
+        Database database = new Database(hashTableSize, output, mode);
+        Parser parser = threads > 0
+            ? new PipelinedParser(database, threads)
+            : new Parser(database, bulk);
+        try {
+            int replayed = 0;
+            if (log != null) {
+                replayed = database.openLog(log, sync);
+            }
+            if (load != null && replayed > 0) {
+                output.write(OutputSink.Event.MESSAGE, "|" + load
+                    + "| is not loaded: |" + log
+                    + "| already holds the database.");
+            }
+            else if (load != null) {
+                database.load(load);
+            }
+            parser.fileparser(inputFile);
+            if (save != null) {
+                database.save(save);
+            }
+        }
+        finally {
+            database.closeLog();
+            output.flush();
+        }
+    }
+
+
+    /**
+     * Read a number given on the command line.
+     * 
+     * @param value
+     *            The text.
+     * @return The number, or -1 if the text is not one.
+     */
+    private static int number(String value) {
+        try {
+            return Integer.parseInt(value);
+        }
+        catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+
+    /**
+     * Print why the command line was rejected, and how to use it, to
+     * standard error. Nothing is run.
+     * 
+     * @param problem
+     *            What is wrong with the command line.
+     */
+    private static void usage(String problem) {
+        System.err.println("GraphProject: " + problem);
+        System.err.println("Usage: java GraphProject <init-hash-size> "
+            + "<command-file> [-log <log-file>] [-sync <n>]");
+        System.err.println("    [-load <snapshot>] [-save <snapshot>] "
+            + "[-threads <n>] [-bulk] [-mapped]");
     }
 }
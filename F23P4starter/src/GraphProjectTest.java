@@ -1,8 +1,10 @@
 import student.TestCase;
-import static org.junit.Assert.assertArrayEquals;
 import java.io.*;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import org.junit.Test;
 
 /**
@@ -13,8 +15,6 @@ import org.junit.Test;
  */
 public class GraphProjectTest extends TestCase {
 
-    private Graph graph;
-
     // ----------------------------------------------------------
     /**
      * Read contents of a file into a string
@@ -30,15 +30,6 @@ public class GraphProjectTest extends TestCase {
     }
 
 
-    /**
-     * Set up the tests that follow.
-     */
-    public void setUp() {
-        graph = new GraphL();
-        graph.init(10);
-    }
-
-
     /**
      * This method is simply to get code coverage of the class declaration.
      */
@@ -101,6 +92,70 @@ public class GraphProjectTest extends TestCase {
     }
 
 
+    /**
+     * This test tries to remove a hub artist and reuse the freed ids.
+     * 
+     * @throws Exception
+     */
+    @Test
+    public void testDatabaseRemoveHub() throws Exception {
+        Database database = new Database(10);
+        for (int i = 0; i < 40; i++) {
+            database.insert("Hub", "Song " + i);
+        }
+        database.insert("Other", "Song 0");
+        database.removeArtist("Hub");
+        database.insert("New", "Fresh");
+        database.insert("New", "Song 1");
+        database.printGraph();
+        assertTrue(systemOut().getHistory().endsWith(
+            "There are 40 connected components\n"
+                + "The largest connected component has 3 elements\n"
+                + "The diameter of the largest component is 2\n"));
+    }
+
+
+    /**
+     * This test tries to compact the graph after heavy removal, both by hand
+     * and once enough ids are free.
+     * 
+     * @throws Exception
+     */
+    @Test
+    public void testDatabaseCompact() throws Exception {
+        Database database = new Database(10);
+        for (int i = 0; i < 20; i++) {
+            database.insert("Artist " + i, "Song " + i);
+            database.insert("Artist " + i, "Shared");
+        }
+        for (int i = 0; i < 20; i += 2) {
+            database.removeSong("Song " + i);
+        }
+        database.compact();
+        database.insert("Artist 3", "Song 0");
+        database.removeArtist("Artist 5");
+        database.printGraph();
+        assertTrue(systemOut().getHistory().endsWith(
+            "There are 2 connected components\n"
+                + "The largest connected component has 30 elements\n"
+                + "The diameter of the largest component is 4\n"));
+
+        for (int i = 0; i < Database.COMPACT_THRESHOLD; i++) {
+            database.insert("Temp " + i, "Temp Song " + i);
+        }
+        for (int i = 0; i < Database.COMPACT_THRESHOLD; i++) {
+            database.removeArtist("Temp " + i);
+            database.removeSong("Temp Song " + i);
+        }
+        database.insert("Artist 7", "Song 5");
+        database.printGraph();
+        assertTrue(systemOut().getHistory().endsWith(
+            "There are 1 connected components\n"
+                + "The largest connected component has 31 elements\n"
+                + "The diameter of the largest component is 4\n"));
+    }
+
+
     /**
      * This test tries to print the records in both hash tables.
      * 
@@ -143,161 +198,349 @@ public class GraphProjectTest extends TestCase {
 
 
     /**
-     * This test tries to test the debug mode of the parser.
+     * This test tries to send the database output to other sinks.
      * 
      * @throws Exception
      */
     @Test
-    public void testParserDebug() throws Exception {
-        String[] args = new String[2];
-        args[0] = "10";
-        args[1] = "P4invalidTestInput.txt";
-        GraphProject.main(args);
-        String output = systemOut().getHistory();
-        String referenceOutput = readFile("P4invalidTestOutput.txt");
-        assertFuzzyEquals(referenceOutput, output);
+    public void testOutputSinks() throws Exception {
+        EventSink events = new EventSink();
+        Database database = new Database(10, events);
+        database.insert("TestArtist", "TestSong");
+        database.insert("TestArtist", "TestSong");
+        database.removeSong("Missing");
+        database.printGraph();
+        assertEquals(7, events.size());
+        assertEquals(OutputSink.Event.ADDED, events.event(0));
+        assertEquals("|TestSong| is added to the Song database.", events
+            .line(1));
+        assertEquals(OutputSink.Event.DUPLICATE, events.event(2));
+        assertEquals(OutputSink.Event.NOT_FOUND, events.event(3));
+        assertEquals(OutputSink.Event.GRAPH, events.event(6));
+
+        String before = systemOut().getHistory();
+        database = new Database(10, new NullSink());
+        Parser parser = new Parser(database);
+        parser.fileparser("P4sampleInput.txt");
+        assertEquals(before, systemOut().getHistory());
     }
 
 
     /**
-     * This test tries to input a non-existing file to the parser.
+     * This test tries the path command between artists and songs, from a
+     * command file.
      * 
      * @throws Exception
      */
-    @Test(expected = FileNotFoundException.class)
-    public void testNullParser() throws Exception {
-        String[] args = new String[2];
-        args[0] = "10";
-        args[1] = "P4NullInput.txt";
-        GraphProject.main(args);
-        fail();
+    @Test
+    public void testPathCommand() throws Exception {
+        File input = File.createTempFile("P4path", ".txt");
+        input.deleteOnExit();
+        FileOutputStream out = new FileOutputStream(input);
+        out.write(("insert Ma Rainey<SEP>See See Rider\n"
+            + "insert Bessie Smith<SEP>See See Rider\n"
+            + "insert Bessie Smith<SEP>Downhearted Blues\n"
+            + "insert Alberta Hunter<SEP>Downhearted Blues\n"
+            + "insert Lonely Artist<SEP>Lonely Song\n"
+            + "path artist Ma Rainey<SEP>song Downhearted Blues\n"
+            + "path song See See Rider <SEP> artist Alberta Hunter\n"
+            + "path artist Ma Rainey<SEP>artist Ma Rainey\n"
+            + "path artist Ma Rainey<SEP>song Lonely Song\n"
+            + "path artist Nobody<SEP>song Nothing\n"
+            + "path artist Ma Rainey song Lonely Song\n"
+            + "path artist Ma Rainey<SEP>artist Ma Rainey\n"
+            + "path album Ma Rainey<SEP>song Lonely Song\n").getBytes());
+        out.close();
+        EventSink events = new EventSink();
+        Database database = new Database(10, events);
+        new Parser(database).fileparser(input.getPath());
+
+        List<String> lines = new ArrayList<String>();
+        for (int i = 0; i < events.size(); i++) {
+            if (events.event(i) != OutputSink.Event.ADDED) {
+                lines.add(events.line(i));
+            }
+        }
+        assertEquals(Arrays.asList(
+            "The path from |Ma Rainey| to |Downhearted Blues| has 3 hops",
+            "|Ma Rainey| -> |See See Rider| -> |Bessie Smith| -> "
+                + "|Downhearted Blues|",
+            "The path from |See See Rider| to |Alberta Hunter| has 3 hops",
+            "|See See Rider| -> |Bessie Smith| -> |Downhearted Blues| -> "
+                + "|Alberta Hunter|",
+            "The path from |Ma Rainey| to |Ma Rainey| has 0 hops",
+            "|Ma Rainey|",
+            "There is no path from |Ma Rainey| to |Lonely Song|",
+            "|Nobody| does not exist in the Artist database.",
+            "|Nothing| does not exist in the Song database.",
+            "Unrecognized input path",
+            "The path from |Ma Rainey| to |Ma Rainey| has 0 hops",
+            "|Ma Rainey|",
+            "Unrecognized input path"), lines);
     }
 
 
     /**
-     * This test tries to process an invalid file through parser.
+     * This test tries the same commands on every hash table storage mode
+     * and compares all that they print. The keys are enough to double both
+     * tables many times over, with tombstones left along the way.
      * 
      * @throws Exception
      */
-    @Test(expected = Exception.class)
-    public void testInvalidParser() throws Exception {
-        String[] args = new String[2];
-        args[0] = "10";
-        args[1] = "P4errorInput.txt";
-        GraphProject.main(args);
-        fail();
+    @Test
+    public void testStorageModes() throws Exception {
+        String[] printed = new String[SymbolTable.Mode.values().length];
+        for (SymbolTable.Mode mode : SymbolTable.Mode.values()) {
+            EventSink events = new EventSink();
+            Database database = new Database(10, events, mode);
+            java.util.Random random = new java.util.Random(15);
+            for (int i = 0; i < 6000; i++) {
+                String artist = "Artist " + random.nextInt(3000);
+                String song = "Song " + random.nextInt(3000);
+                int command = random.nextInt(10);
+                if (command == 0) {
+                    database.removeArtist(artist);
+                }
+                else if (command == 1) {
+                    database.removeSong(song);
+                }
+                else {
+                    database.insert(artist, song);
+                }
+            }
+            database.printArtist();
+            database.printSong();
+            database.printGraph();
+            StringBuilder builder = new StringBuilder();
+            for (int i = 0; i < events.size(); i++) {
+                builder.append(events.line(i)).append('\n');
+            }
+            printed[mode.ordinal()] = builder.toString();
+        }
+        assertTrue(printed[0].contains("TOMBSTONE"));
+        assertEquals(9, printed[0].split("Artist hash table size doubled")
+            .length - 1);
+        assertEquals(printed[0], printed[1]);
+        assertEquals(printed[0], printed[2]);
+        assertEquals(printed[0], printed[3]);
     }
 
 
     /**
-     * This test tries to validate the initial count of the graph.
+     * This test tries a bulk insert against the same inserts made one at a
+     * time, on a database that already has records and removals.
+     * 
+     * @throws Exception
      */
     @Test
-    public void testGraphInit() {
-        assertEquals(10, graph.nodeCount());
+    public void testBulkInsert() throws Exception {
+        java.util.List<String[]> pairs = new java.util.ArrayList<String[]>();
+        java.util.Random random = new java.util.Random(19);
+        for (int i = 0; i < 3000; i++) {
+            pairs.add(new String[] { "Artist " + random.nextInt(200),
+                "Song " + random.nextInt(300) });
+        }
+        EventSink[] sinks = new EventSink[3];
+        for (int round = 0; round < 3; round++) {
+            sinks[round] = new EventSink();
+            Database database = new Database(10, sinks[round]);
+            for (int i = 0; i < 100; i++) {
+                database.insert("Artist " + i, "Song " + i);
+                database.removeSong("Song " + (i / 2));
+            }
+            if (round == 0) {
+                for (String[] pair : pairs) {
+                    database.insert(pair[0], pair[1]);
+                }
+            }
+            else {
+                database.bulkInsert(pairs.iterator(), round == 1);
+            }
+            database.printArtist();
+            database.printSong();
+            database.printGraph();
+        }
+        int duplicates = 0;
+        for (int i = 0, k = 0; i < sinks[0].size(); i++) {
+            assertEquals(sinks[0].line(i), sinks[1].line(i));
+            if (sinks[0].event(i) == OutputSink.Event.DUPLICATE) {
+                duplicates++;
+                continue;
+            }
+            assertEquals(sinks[0].line(i), sinks[2].line(k++));
+        }
+        assertEquals(sinks[0].size(), sinks[1].size());
+        assertEquals(sinks[0].size(), sinks[2].size() + duplicates);
+        assertTrue(duplicates > 0);
     }
 
 
     /**
-     * This test tries to add edge between two nodes.
+     * This test tries the parser that hands runs of inserts to bulkInsert
+     * against the plain one, on the sample files and on runs broken by
+     * other commands and by a line that cannot be split.
+     * 
+     * @throws Exception
      */
     @Test
-    public void testGraphEdge() {
-        graph.addEdge(0, 1, 10);
-        assertTrue(graph.hasEdge(0, 1));
-        assertFalse(graph.hasEdge(0, 2));
+    public void testBulkParser() throws Exception {
+        File input = File.createTempFile("P4bulk", ".txt");
+        input.deleteOnExit();
+        PrintWriter writer = new PrintWriter(input);
+        java.util.Random random = new java.util.Random(190);
+        for (int i = 0; i < 2000; i++) {
+            if (i % 300 == 299) {
+                writer.println("remove artist Artist " + random.nextInt(50));
+                writer.println("print graph");
+            }
+            writer.println("insert Artist " + random.nextInt(50) + "<SEP>Song "
+                + random.nextInt(80));
+        }
+        writer.println("insert Artist 1 Song 1");
+        writer.println("print artist");
+        writer.close();
+        String[] files = { "P4sampleInput.txt", "P4sampleInput2.txt",
+            "P4removeInput.txt", "P4largeInput.txt", "P4errorInput.txt",
+            input.getPath() };
+        for (String file : files) {
+            String[] printed = new String[2];
+            for (int round = 0; round < 2; round++) {
+                EventSink events = new EventSink();
+                Parser parser = new Parser(new Database(10, events),
+                    round == 1);
+                StringBuilder builder = new StringBuilder();
+                try {
+                    parser.fileparser(file);
+                }
+                catch (Exception e) {
+                    builder.append(e.getClass().getName()).append('\n');
+                }
+                for (int i = 0; i < events.size(); i++) {
+                    builder.append(events.line(i)).append('\n');
+                }
+                printed[round] = builder.toString();
+            }
+            assertEquals(printed[0], printed[1]);
+        }
     }
 
 
     /**
-     * This test tries to validate the weight between two nodes.
+     * This test tries to test the debug mode of the parser.
+     * 
+     * @throws Exception
      */
     @Test
-    public void testGraphWeight() {
-        graph.addEdge(0, 1, 1);
-        assertEquals(1, graph.weight(0, 1));
+    public void testParserDebug() throws Exception {
+        String[] args = new String[2];
+        args[0] = "10";
+        args[1] = "P4invalidTestInput.txt";
+        GraphProject.main(args);
+        String output = systemOut().getHistory();
+        String referenceOutput = readFile("P4invalidTestOutput.txt");
+        assertFuzzyEquals(referenceOutput, output);
     }
 
 
     /**
-     * This test tries to remove node from the graph.
+     * This test tries to input a non-existing file to the parser.
+     * 
+     * @throws Exception
      */
-    @Test
-    public void testRemoveEdge() {
-        graph.addEdge(0, 1, 20);
-        graph.removeEdge(0, 1);
-        assertFalse(graph.hasEdge(0, 1));
+    @Test(expected = FileNotFoundException.class)
+    public void testNullParser() throws Exception {
+        String[] args = new String[2];
+        args[0] = "10";
+        args[1] = "P4NullInput.txt";
+        GraphProject.main(args);
+        fail();
     }
 
 
     /**
-     * This test tries to print all nodes in graph.
+     * This test tries to process an invalid file through parser.
+     * 
+     * @throws Exception
      */
-    @Test
-    public void testNeighbors() {
-        graph.addEdge(0, 1, 25);
-        graph.addEdge(0, 2, 30);
-        int[] neighbors = graph.neighbors(0);
-        int[] expectedOutput = { 1, 2 };
-        assertArrayEquals(expectedOutput, neighbors);
+    @Test(expected = Exception.class)
+    public void testInvalidParser() throws Exception {
+        String[] args = new String[2];
+        args[0] = "10";
+        args[1] = "P4errorInput.txt";
+        GraphProject.main(args);
+        fail();
     }
 
 
     /**
-     * This test tries to remove existing edges.
+     * This test tries a large input against the output of the original
+     * program: a long artist/song chain, many small stars joined by random
+     * inserts, removals along the way, and tables that double many times.
+     * 
+     * @throws Exception
      */
     @Test
-    public void testRemoveExistingEdge() {
-        graph.addEdge(0, 1, 1);
-        graph.addEdge(1, 2, 1);
-        assertTrue(graph.hasEdge(0, 1));
-        graph.removeEdge(0, 1);
-        assertFalse(graph.hasEdge(0, 1));
+    public void testLargeGeneratedGraph() throws Exception {
+        String[] args = new String[2];
+        args[0] = "10";
+        args[1] = "P4largeInput.txt";
+        GraphProject.main(args);
+        String output = systemOut().getHistory();
+        String referenceOutput = readFile("P4largeOutput.txt");
+        assertEquals(referenceOutput, output);
     }
 
 
     /**
-     * This test tries to remove non existing edges.
+     * This test tries misspelled options, missing and malformed values and
+     * conflicting modes, each of which must print the usage to standard
+     * error and run nothing.
+     * 
+     * @throws Exception
      */
     @Test
-    public void testRemoveNonExistentEdge() {
-        graph.addEdge(0, 1, 1);
-        graph.addEdge(1, 2, 1);
-        assertFalse(graph.hasEdge(0, 3));
-        graph.removeEdge(0, 3);
-        assertFalse(graph.hasEdge(0, 3));
+    public void testBadOptions() throws Exception {
+        String input = "P4sampleInput.txt";
+        String[][] commandLines = { { "10", input, "-sav", "out.db" },
+            { "10", input, "-save" }, { "10", input, "-threads", "2",
+                "-bulk" }, { "10", input, "-mapped", "-threads", "1" }, {
+                    "10", input, "-sync", "x" }, { "10", input, "-threads",
+                        "0" }, { "10" }, { "ten", input } };
+        String[] problems = { "unknown option -sav", "-save needs a value",
+            "-threads cannot be combined with -bulk",
+            "-threads cannot be combined with -mapped",
+            "-sync needs a positive number",
+            "-threads needs a positive number",
+            "a hash table size and a command file are needed",
+            "the hash table size must be a positive number" };
+        for (int i = 0; i < commandLines.length; i++) {
+            systemErr().clearHistory();
+            GraphProject.main(commandLines[i]);
+            String error = systemErr().getHistory();
+            assertTrue(error.startsWith("GraphProject: " + problems[i]
+                + "\n"));
+            assertTrue(error.contains("Usage: java GraphProject"));
+        }
+        assertEquals("", systemOut().getHistory());
+        assertFalse(new File("out.db").exists());
     }
 
 
     /**
-     * This test tries to validate the graph integrity after removal.
+     * This test tries to keep the hash tables in mapped files, which must
+     * print the same as the heap tables.
+     * 
+     * @throws Exception
      */
     @Test
-    public void testGraphIntegrityAfterEdgeRemoval() {
-        graph.addEdge(0, 1, 1);
-        graph.addEdge(1, 2, 1);
-        graph.removeEdge(0, 1);
-        assertTrue(graph.hasEdge(1, 2));
+    public void testMappedOption() throws Exception {
+        GraphProject.main(new String[] { "10", "P4sampleInput2.txt",
+            "-mapped" });
+        assertFuzzyEquals(readFile("P4sampleOutput2.txt"), systemOut()
+            .getHistory());
     }
 
 
-    /**
-     * This test tries to do the complex remove test.
-     */
-    @Test
-    public void testMultipleRemovalsAndAdditions() {
-        graph.addEdge(1, 2, 1);
-        graph.addEdge(2, 3, 1);
-        graph.removeEdge(1, 2);
-        graph.removeEdge(2, 3);
-        assertFalse(graph.hasEdge(1, 2));
-        assertFalse(graph.hasEdge(2, 3));
-        graph.addEdge(1, 2, 1);
-        graph.addEdge(2, 3, 1);
-        assertTrue(graph.hasEdge(1, 2));
-        assertTrue(graph.hasEdge(2, 3));
-    }
-    
     /**
      * This test tries to do the complex input.
      * @throws Exception 
@@ -0,0 +1,177 @@
+import static org.junit.Assert.assertArrayEquals;
+import org.junit.Test;
+import student.TestCase;
+
+/**
+ * The tests every Graph must pass. Each implementation has a subclass that
+ * gives the graph to test.
+ *
+ * @author Yu-Kai Lo
+ * @version 1.0
+ */
+public abstract class GraphTestCase extends TestCase {
+
+    /**
+     * The graph under test, with 10 nodes.
+     */
+    protected Graph graph;
+
+    /**
+     * Create the graph that the tests run against.
+     * 
+     * @return A new, uninitialized graph.
+     */
+    protected abstract Graph createGraph();
+
+
+    /**
+     * Set up the tests that follow.
+     */
+    public void setUp() {
+        graph = createGraph();
+        graph.init(10);
+    }
+
+
+    /**
+     * This test tries to validate the initial count of the graph.
+     */
+    @Test
+    public void testGraphInit() {
+        assertEquals(10, graph.nodeCount());
+    }
+
+
+    /**
+     * This test tries to add edge between two nodes.
+     */
+    @Test
+    public void testGraphEdge() {
+        graph.addEdge(0, 1, 10);
+        assertTrue(graph.hasEdge(0, 1));
+        assertFalse(graph.hasEdge(0, 2));
+    }
+
+
+    /**
+     * This test tries to validate the weight between two nodes.
+     */
+    @Test
+    public void testGraphWeight() {
+        graph.addEdge(0, 1, 1);
+        assertEquals(1, graph.weight(0, 1));
+    }
+
+
+    /**
+     * This test tries to remove node from the graph.
+     */
+    @Test
+    public void testRemoveEdge() {
+        graph.addEdge(0, 1, 20);
+        graph.removeEdge(0, 1);
+        assertFalse(graph.hasEdge(0, 1));
+    }
+
+
+    /**
+     * This test tries to print all nodes in graph.
+     */
+    @Test
+    public void testNeighbors() {
+        graph.addEdge(0, 1, 25);
+        graph.addEdge(0, 2, 30);
+        int[] neighbors = graph.neighbors(0);
+        int[] expectedOutput = { 1, 2 };
+        assertArrayEquals(expectedOutput, neighbors);
+    }
+
+
+    /**
+     * This test tries to remove existing edges.
+     */
+    @Test
+    public void testRemoveExistingEdge() {
+        graph.addEdge(0, 1, 1);
+        graph.addEdge(1, 2, 1);
+        assertTrue(graph.hasEdge(0, 1));
+        graph.removeEdge(0, 1);
+        assertFalse(graph.hasEdge(0, 1));
+    }
+
+
+    /**
+     * This test tries to remove non existing edges.
+     */
+    @Test
+    public void testRemoveNonExistentEdge() {
+        graph.addEdge(0, 1, 1);
+        graph.addEdge(1, 2, 1);
+        assertFalse(graph.hasEdge(0, 3));
+        graph.removeEdge(0, 3);
+        assertFalse(graph.hasEdge(0, 3));
+    }
+
+
+    /**
+     * This test tries to validate the graph integrity after removal.
+     */
+    @Test
+    public void testGraphIntegrityAfterEdgeRemoval() {
+        graph.addEdge(0, 1, 1);
+        graph.addEdge(1, 2, 1);
+        graph.removeEdge(0, 1);
+        assertTrue(graph.hasEdge(1, 2));
+    }
+
+
+    /**
+     * This test tries to do the complex remove test.
+     */
+    @Test
+    public void testMultipleRemovalsAndAdditions() {
+        graph.addEdge(1, 2, 1);
+        graph.addEdge(2, 3, 1);
+        graph.removeEdge(1, 2);
+        graph.removeEdge(2, 3);
+        assertFalse(graph.hasEdge(1, 2));
+        assertFalse(graph.hasEdge(2, 3));
+        graph.addEdge(1, 2, 1);
+        graph.addEdge(2, 3, 1);
+        assertTrue(graph.hasEdge(1, 2));
+        assertTrue(graph.hasEdge(2, 3));
+    }
+
+
+    /**
+     * This test tries to give one node far more neighbors than the others.
+     */
+    @Test
+    public void testHubNode() {
+        for (int i = 1; i < 100; i += 2) {
+            graph.addEdge(0, i, i);
+        }
+        for (int i = 98; i > 0; i -= 2) {
+            graph.addEdge(0, i, i);
+        }
+        assertEquals(99, graph.edgeCount());
+        assertEquals(37, graph.weight(0, 37));
+        graph.addEdge(0, 37, 5);
+        assertEquals(5, graph.weight(0, 37));
+        assertFalse(graph.hasEdge(0, 0));
+        assertFalse(graph.hasEdge(0, 150));
+
+        for (int i = 1; i < 100; i += 3) {
+            graph.removeEdge(0, i);
+        }
+        graph.removeEdge(0, 1);
+        int[] neighbors = graph.neighbors(0);
+        assertEquals(66, neighbors.length);
+        assertEquals(66, graph.edgeCount());
+        for (int i = 1; i < neighbors.length; i++) {
+            assertTrue(neighbors[i - 1] < neighbors[i]);
+        }
+        assertFalse(graph.hasEdge(0, 4));
+        assertTrue(graph.hasEdge(0, 5));
+    }
+}
@@ -1,3 +1,5 @@
+import java.io.IOException;
+
 /**
  * The Hash table class stores records with keys and values.
  * It supports insertions, searches, deletions, printing, and resizing.
@@ -7,11 +9,19 @@
  * @version 1.0
  */
 
-public class Hash {
+public class Hash implements SymbolTable {
+    /**
+     * The marker left in the slot of a deleted record. It is compared by
+     * identity, so a real key spelled "TOMBSTONE" is not mistaken for it.
+     */
+    private static final Record TOMBSTONE = new Record("TOMBSTONE", 0);
+
     private Record[] table;
     private int size;
+    private int tombstones;
     private int tableSize;
     private String type;
+    private OutputSink output;
 
     /**
      * Constructs a new HashTable with the specified table size.
@@ -23,11 +33,26 @@ public class Hash {
      *            The type of the hash table.
      */
     public Hash(int inputTableSize, String type) {
+        this(inputTableSize, type, new StreamSink(System.out, true));
+    }
+
+
+    /**
+     * Constructs a new HashTable that writes its messages to a sink.
+     *
+     * @param inputTableSize
+     *            The initial size of the hash table.
+     * @param type
+     *            The type of the hash table.
+     * @param output
+     *            The sink for the messages.
+     */
+    public Hash(int inputTableSize, String type, OutputSink output) {
         this.tableSize = inputTableSize;
         table = new Record[tableSize];
         size = 0;
         this.type = type;
-
+        this.output = output;
     }
 
 
@@ -43,25 +68,47 @@ public class Hash {
      *         The hash function value (the home slot in the table for this key)
      */
     public static int h(String s, int length) {
-        int intLength = s.length() / 4;
-        long sum = 0;
-        for (int j = 0; j < intLength; j++) {
-            char[] c = s.substring(j * 4, (j * 4) + 4).toCharArray();
-            long mult = 1;
-            for (int k = 0; k < c.length; k++) {
-                sum += c[k] * mult;
-                mult *= 256;
-            }
-        }
+        return slot(fold(s), length);
+    }
 
-        char[] c = s.substring(intLength * 4).toCharArray();
+
+    /**
+     * Compute the full folded sum of a string, before it is reduced to a
+     * slot. Records keep this value so probes and resizes never have to
+     * hash the key again.
+     * 
+     * @param s
+     *            The string that we are hashing
+     * @return The folded sum of the string
+     */
+    public static long fold(String s) {
+        // Each block of four characters adds c0 + c1 * 256 + c2 * 256^2 +
+        // c3 * 256^3, so the multiplier only depends on the position within
+        // the block. Reading with charAt keeps this free of allocation.
+        long sum = 0;
         long mult = 1;
-        for (int k = 0; k < c.length; k++) {
-            sum += c[k] * mult;
+        for (int i = 0; i < s.length(); i++) {
+            if ((i & 3) == 0) {
+                mult = 1;
+            }
+            sum += s.charAt(i) * mult;
             mult *= 256;
         }
+        return sum;
+    }
+
 
-        return (int)(Math.abs(sum) % length);
+    /**
+     * Reduce a folded sum to the home slot in a table.
+     * 
+     * @param hash
+     *            The folded sum from fold()
+     * @param length
+     *            Length of the hash table
+     * @return The home slot in the table
+     */
+    static int slot(long hash, int length) {
+        return (int)(Math.abs(hash) % length);
     }
 
 
@@ -74,21 +121,24 @@ public class Hash {
      */
     void hashInsert(Record record) throws Exception {
         String key = record.getKey();
+        long hash = record.getHash();
         if (size >= table.length / 2) {
             resize();
         }
-        int hashValue = h(key, tableSize);
+        int hashValue = slot(hash, tableSize);
         int home = hashValue;
         int pos = home;
 
         int probeCount = 0;
         while (table[pos] != null && probeCount < tableSize) {
-            if (table[pos].getKey().equals(key)) {
-                return;
-            }
-            if (table[pos].getKey().equals("TOMBSTONE")) {
+            if (table[pos] == TOMBSTONE) {
+                tombstones--;
                 break;
             }
+            if (table[pos].getHash() == hash
+                && table[pos].getKey().equals(key)) {
+                return;
+            }
             pos = (home + probeCount * probeCount) % tableSize;
             probeCount++;
         }
@@ -101,8 +151,8 @@ public class Hash {
 
         table[pos] = record;
         size++;
-        System.out.println("|" + key + "| is added to the " + type
-            + " database.");
+        output.write(OutputSink.Event.ADDED, "|" + key + "| is added to the "
+            + type + " database.");
     }
 
 
@@ -114,20 +164,37 @@ public class Hash {
      * @return The record with the matching key, or null if not found.
      */
     Record hashSearch(String key) {
-        int hashValue = h(key, tableSize);
-        int home = hashValue;
-        int pos = home;
-        int probeCount = 0;
+        return hashSearch(key, fold(key));
+    }
 
-        while (table[pos] != null && probeCount < tableSize) {
-            if (table[pos].getKey().equals(key)) {
-                return table[pos];
-            }
-            pos = (home + probeCount * probeCount) % tableSize;
-            probeCount++;
-        }
 
-        return null;
+    /**
+     * Searches for a key whose folded sum is already known. Slots whose
+     * cached sum differs are skipped without comparing strings.
+     *
+     * @param key
+     *            The key to search for.
+     * @param hash
+     *            The folded sum of the key, from fold().
+     * @return The record with the matching key, or null if not found.
+     */
+    Record hashSearch(String key, long hash) {
+        int pos = find(table, key, hash);
+        return pos < 0 ? null : table[pos];
+    }
+
+
+    @Override
+    public int hashGet(String key, long hash) {
+        Record record = hashSearch(key, hash);
+        return record == null ? NOT_FOUND : record.getValue();
+    }
+
+
+    @Override
+    public void hashInsert(String key, long hash, int value)
+        throws Exception {
+        hashInsert(new Record(key, value, hash));
     }
 
 
@@ -137,78 +204,188 @@ public class Hash {
      * @param key
      *            The key of the record to delete.
      */
-    void hashDelete(String key) {
-        int hashValue = h(key, tableSize);
-        int home = hashValue;
+    @Override
+    public void hashDelete(String key) {
+        long hash = fold(key);
+        int pos = find(table, key, hash);
+        if (pos < 0) {
+            return;
+        }
+        table[pos] = TOMBSTONE;
+        tombstones++;
+        size--;
+        output.write(OutputSink.Event.REMOVED, "|" + key
+            + "| is removed from the " + type + " database.");
+        if (tombstones > tableSize / 4) {
+            Record[] newTable = rehash(tableSize);
+            if (newTable != null) {
+                table = newTable;
+                tombstones = 0;
+            }
+        }
+    }
+
+
+    /**
+     * Find the slot holding a key in a table by quadratic probing.
+     *
+     * @param t
+     *            The table to search.
+     * @param key
+     *            The key to search for.
+     * @param hash
+     *            The folded sum of the key.
+     * @return The slot of the key, or -1 if it is not there.
+     */
+    private static int find(Record[] t, String key, long hash) {
+        int home = slot(hash, t.length);
         int pos = home;
         int probeCount = 0;
 
-        while (table[pos] != null && probeCount < tableSize) {
-            if (table[pos].getKey().equals(key)) {
-                table[pos] = new Record("TOMBSTONE", 0);
-                size--;
-                System.out.println("|" + key + "| is removed from the " + type
-                    + " database.");
-                return;
+        while (t[pos] != null && probeCount < t.length) {
+            if (t[pos] != TOMBSTONE && t[pos].getHash() == hash
+                && t[pos].getKey().equals(key)) {
+                return pos;
             }
-            pos = (home + probeCount * probeCount) % tableSize;
+            pos = (home + probeCount * probeCount) % t.length;
             probeCount++;
         }
+        return -1;
+    }
 
+
+    /**
+     * Preserve all the records and resize the hash table to double size,
+     * and again until every record finds a free slot.
+     */
+    private void resize() {
+        Record[] newTable = null;
+        while (newTable == null) {
+            tableSize = tableSize * 2;
+            output.write(OutputSink.Event.RESIZED, type
+                + " hash table size doubled.");
+            newTable = rehash(tableSize);
+        }
+        table = newTable;
+        tombstones = 0;
     }
 
 
     /**
-     * Preserve all the records and resize the hash table to double size.
+     * Place a record in a table by quadratic probing from its home slot.
      * 
-     * @throws Exception
-     */
-    private void resize() throws Exception {
-        int oldSize = tableSize;
-        tableSize = tableSize * 2;
-        Record[] newTable = new Record[tableSize];
-        int maxProbes = tableSize;
-
-        for (int i = 0; i < oldSize; i++) {
-            if (table[i] != null && !table[i].getKey().equals("TOMBSTONE")) {
-                Record record = table[i];
-                String key = record.getKey();
-                int hashValue = h(key, tableSize);
-                int home = hashValue;
-                int pos = home;
-                int probeCount = 0;
-                while (newTable[pos] != null && probeCount < maxProbes) {
-                    pos = (home + probeCount * probeCount) % tableSize;
-                    probeCount++;
-                }
-                if (probeCount == maxProbes) {
-                    resize();
-                    return;
-                }
-                newTable[pos] = record;
+     * @param t
+     *            The table.
+     * @param record
+     *            The record to place.
+     * @return False if no free slot was found.
+     */
+    private static boolean place(Record[] t, Record record) {
+        int home = slot(record.getHash(), t.length);
+        int pos = home;
+        int probeCount = 0;
+        while (t[pos] != null && probeCount < t.length) {
+            pos = (home + probeCount * probeCount) % t.length;
+            probeCount++;
+        }
+        if (probeCount == t.length) {
+            return false;
+        }
+        t[pos] = record;
+        return true;
+    }
 
+
+    /**
+     * Place every live record into a new table of the given size, in slot
+     * order, leaving the tombstones behind. Rehashing at the current size
+     * clears out tombstones so probe chains stay short under steady insert
+     * and delete load.
+     * 
+     * @param newSize
+     *            The size of the new table.
+     * @return The new table, or null if a record could not be placed.
+     */
+    private Record[] rehash(int newSize) {
+        Record[] newTable = new Record[newSize];
+        for (int i = 0; i < table.length; i++) {
+            if (table[i] != null && table[i] != TOMBSTONE && !place(newTable,
+                table[i])) {
+                return null;
             }
         }
-        table = newTable;
-        System.out.println(type + " hash table size doubled.");
+        return newTable;
     }
 
 
     /**
-     * Prints the contents of the hash table, including tombStones.
+     * Replace the value of every record with its new node id, after the
+     * graph has been compacted.
+     * 
+     * @param newIds
+     *            The new id of every old node id.
      */
-    void hashPrintHashtable() {
+    @Override
+    public void remap(int[] newIds) {
+        for (int i = 0; i < tableSize; i++) {
+            if (table[i] != null && table[i] != TOMBSTONE) {
+                table[i].setValue(newIds[table[i].getValue()]);
+            }
+        }
+    }
+
 
+    /**
+     * Prints the contents of the hash table, including tombStones.
+     */
+    @Override
+    public void hashPrintHashtable() {
         for (int i = 0; i < tableSize; i++) {
             if (table[i] != null) {
-                if (table[i].getKey().equals("TOMBSTONE")) {
-                    System.out.println(i + ": " + table[i].getKey());
+                if (table[i] == TOMBSTONE) {
+                    output.write(OutputSink.Event.SLOT, i + ": "
+                        + table[i].getKey());
                 }
                 else {
-                    System.out.println(i + ": |" + table[i].getKey() + "|");
+                    output.write(OutputSink.Event.SLOT, i + ": |"
+                        + table[i].getKey() + "|");
                 }
             }
         }
-        System.out.println("total " + type.toLowerCase() + "s: " + size);
+        output.write(OutputSink.Event.TOTAL, "total " + type.toLowerCase()
+            + "s: " + size);
+    }
+
+
+    @Override
+    public int capacity() {
+        return tableSize;
+    }
+
+
+    @Override
+    public void visitSlots(SlotVisitor visitor) throws IOException {
+        for (int i = 0; i < tableSize; i++) {
+            if (table[i] == TOMBSTONE) {
+                visitor.visit(i, null, 0, 0);
+            }
+            else if (table[i] != null) {
+                visitor.visit(i, table[i].getKey(), table[i].getHash(),
+                    table[i].getValue());
+            }
+        }
+    }
+
+
+    @Override
+    public void restoreSlot(int pos, String key, long hash, int value) {
+        if (key == null) {
+            table[pos] = TOMBSTONE;
+            tombstones++;
+        }
+        else {
+            table[pos] = new Record(key, value, hash);
+            size++;
+        }
     }
 }
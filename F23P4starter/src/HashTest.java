@@ -1,3 +1,4 @@
+import java.util.Random;
 import student.TestCase;
 
 /**
@@ -42,6 +43,59 @@ public class HashTest extends TestCase {
     }
 
 
+    /**
+     * Compute the hash function the original way, by copying out each block
+     * of four characters.
+     * 
+     * @param s
+     *            The string that we are hashing
+     * @param length
+     *            Length of the hash table
+     * @return The home slot in the table for this key
+     */
+    private static int blockHash(String s, int length) {
+        int intLength = s.length() / 4;
+        long sum = 0;
+        for (int j = 0; j < intLength; j++) {
+            char[] c = s.substring(j * 4, (j * 4) + 4).toCharArray();
+            long mult = 1;
+            for (int k = 0; k < c.length; k++) {
+                sum += c[k] * mult;
+                mult *= 256;
+            }
+        }
+
+        char[] c = s.substring(intLength * 4).toCharArray();
+        long mult = 1;
+        for (int k = 0; k < c.length; k++) {
+            sum += c[k] * mult;
+            mult *= 256;
+        }
+
+        return (int)(Math.abs(sum) % length);
+    }
+
+
+    /**
+     * Check the sfold method against the original block copying version on
+     * keys of many lengths, including characters past the byte range.
+     */
+    public void testSfoldMatchesBlocks() {
+        Random random = new Random(5040);
+        for (int round = 0; round < 2000; round++) {
+            char[] key = new char[random.nextInt(64)];
+            for (int i = 0; i < key.length; i++) {
+                key[i] = (char)(random.nextBoolean()
+                    ? 32 + random.nextInt(95)
+                    : random.nextInt(Character.MAX_VALUE));
+            }
+            String s = new String(key);
+            int length = 1 + random.nextInt(100000);
+            assertEquals(blockHash(s, length), Hash.h(s, length));
+        }
+    }
+
+
     /**
      * This test tries to setup a pair of record.
      */
@@ -49,6 +103,9 @@ public class HashTest extends TestCase {
         Record record = new Record("Test", 0);
         assertEquals(record.getKey(), "Test");
         assertEquals(record.getValue(), 0);
+        assertEquals(Hash.fold("Test"), record.getHash());
+        assertEquals(Hash.h("Test", 10000), Math.abs(record.getHash())
+            % 10000);
     }
 
 
@@ -116,6 +173,56 @@ public class HashTest extends TestCase {
     }
 
 
+    /**
+     * This test tries to store a real key spelled like the tombstone marker.
+     * 
+     * @throws Exception
+     */
+    public void testTombstoneKey() throws Exception {
+        Hash songHashTable = new Hash(10, "Song");
+        Record tombstone = new Record("TOMBSTONE", 3);
+        songHashTable.hashInsert(record1);
+        songHashTable.hashDelete("Test");
+        assertNull(songHashTable.hashSearch("TOMBSTONE"));
+        songHashTable.hashInsert(tombstone);
+        assertEquals(tombstone, songHashTable.hashSearch("TOMBSTONE"));
+        songHashTable.hashPrintHashtable();
+        assertTrue(systemOut().getHistory().contains(": |TOMBSTONE|\n"));
+        assertTrue(systemOut().getHistory().endsWith("total songs: 1\n"));
+    }
+
+
+    /**
+     * This test tries to churn inserts and deletes, which should clear out
+     * tombstones without growing the table.
+     * 
+     * @throws Exception
+     */
+    public void testTombstoneRehash() throws Exception {
+        Hash songHashTable = new Hash(16, "Song");
+        for (int i = 0; i < 200; i++) {
+            songHashTable.hashInsert(new Record("Song " + i, i));
+            if (i >= 3) {
+                songHashTable.hashDelete("Song " + (i - 3));
+            }
+        }
+        assertFalse(systemOut().getHistory().contains("doubled"));
+        systemOut().clearHistory();
+        songHashTable.hashPrintHashtable();
+        String[] lines = systemOut().getHistory().split("\n");
+        int tombstones = 0;
+        for (String line : lines) {
+            if (line.endsWith(": TOMBSTONE")) {
+                tombstones++;
+            }
+        }
+        assertTrue(tombstones <= 4);
+        assertEquals("total songs: 3", lines[lines.length - 1]);
+        assertNotNull(songHashTable.hashSearch("Song 197"));
+        assertNull(songHashTable.hashSearch("Song 196"));
+    }
+
+
     /**
      * This test tries to input lots of records and test the resize method.
      * 
@@ -135,4 +242,163 @@ public class HashTest extends TestCase {
             "Artist hash table size doubled.\n"
                 + "|ExpandTest| is added to the Artist database.\n"));
     }
+
+
+    /**
+     * Lay out keys as a table that doubles in one pass would: each key is
+     * probed into place in insert order, and each doubling places the keys
+     * again in slot order, doubling once more if one finds no free slot.
+     *
+     * @param size
+     *            The initial table size.
+     * @param keys
+     *            The keys, all different, in insert order.
+     * @return The slot lines hashPrintHashtable should print.
+     */
+    private String oneShotLayout(int size, String[] keys) {
+        String[] table = new String[size];
+        int count = 0;
+        for (String key : keys) {
+            if (count >= table.length / 2) {
+                table = doubled(table, table.length * 2);
+            }
+            while (!probe(table, key)) {
+                table = doubled(table, table.length * 2);
+            }
+            count++;
+        }
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < table.length; i++) {
+            if (table[i] != null) {
+                builder.append(i + ": |" + table[i] + "|\n");
+            }
+        }
+        return builder.toString();
+    }
+
+
+    /**
+     * Place the keys of a table into a larger one in slot order.
+     *
+     * @param old
+     *            The table.
+     * @param newSize
+     *            The size of the larger table.
+     * @return The larger table.
+     */
+    private String[] doubled(String[] old, int newSize) {
+        String[] table = new String[newSize];
+        for (String moved : old) {
+            if (moved != null && !probe(table, moved)) {
+                return doubled(old, newSize * 2);
+            }
+        }
+        return table;
+    }
+
+
+    /**
+     * Put a key in the first free slot of its quadratic probe sequence.
+     *
+     * @param table
+     *            The table.
+     * @param key
+     *            The key.
+     * @return False if no free slot was found.
+     */
+    private boolean probe(String[] table, String key) {
+        int home = Hash.h(key, table.length);
+        int pos = home;
+        int probeCount = 0;
+        while (table[pos] != null && probeCount < table.length) {
+            pos = (home + probeCount * probeCount) % table.length;
+            probeCount++;
+        }
+        if (probeCount == table.length) {
+            return false;
+        }
+        table[pos] = key;
+        return true;
+    }
+
+
+    /**
+     * Print a table and keep only its slot lines.
+     *
+     * @param table
+     *            The table.
+     * @param sink
+     *            The sink the table writes to.
+     * @return The slot lines.
+     */
+    private String slots(Hash table, EventSink sink) {
+        table.hashPrintHashtable();
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < sink.size(); i++) {
+            if (sink.event(i) == OutputSink.Event.SLOT) {
+                builder.append(sink.line(i)).append('\n');
+            }
+        }
+        return builder.toString();
+    }
+
+
+    /**
+     * This test tries many doublings, well past 64 slots, and checks that
+     * the table prints the layout of doubling in one pass.
+     *
+     * @throws Exception
+     */
+    public void testOneShotLayout() throws Exception {
+        String[] keys = new String[3000];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = "Song " + i;
+        }
+        EventSink sink = new EventSink();
+        Hash table = new Hash(10, "Song", sink);
+        for (String key : keys) {
+            table.hashInsert(new Record(key, 0));
+        }
+        String expected = oneShotLayout(10, keys);
+        assertEquals(expected, slots(table, sink));
+        assertEquals("total songs: 3000", sink.line(sink.size() - 1));
+    }
+
+
+    /**
+     * This test tries to insert and delete across several doublings and
+     * tombstone clean ups, and checks that every key stays reachable.
+     * Keys are searched before they are inserted again, as the database
+     * does.
+     * 
+     * @throws Exception
+     */
+    public void testInsertDeleteMix() throws Exception {
+        Hash songHashTable = new Hash(1024, "Song", new NullSink());
+        for (int i = 0; i < 5000; i++) {
+            songHashTable.hashInsert(new Record("Song " + i, i));
+            if (i % 3 == 0) {
+                songHashTable.hashDelete("Song " + (i / 2));
+            }
+            String again = "Song " + (i / 2);
+            if (i % 7 == 0 && songHashTable.hashSearch(again) == null) {
+                songHashTable.hashInsert(new Record(again, i));
+            }
+        }
+        java.util.Set<String> live = new java.util.HashSet<String>();
+        for (int i = 0; i < 5000; i++) {
+            live.add("Song " + i);
+            if (i % 3 == 0) {
+                live.remove("Song " + (i / 2));
+            }
+            if (i % 7 == 0) {
+                live.add("Song " + (i / 2));
+            }
+        }
+        for (int i = 0; i < 5000; i++) {
+            String key = "Song " + i;
+            assertEquals(live.contains(key), songHashTable.hashSearch(
+                key) != null);
+        }
+    }
 }
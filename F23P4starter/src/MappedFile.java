@@ -0,0 +1,241 @@
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * The MappedFile class reads and writes numbers in a file through memory
+ * maps, so the data lives in the OS page cache rather than on the heap.
+ * One map cannot be larger than 2 GB, so the file is mapped in chunks of
+ * a fixed power of two size. Values are read at their own alignment, which
+ * keeps every value inside one chunk.
+ *
+ * @author Yu-Kai Lo
+ * @version 1.0
+ */
+public class MappedFile implements Closeable {
+    /**
+     * The default chunk size, 1 GB, as a power of two.
+     */
+    static final int CHUNK_BITS = 30;
+
+    private File file;
+    private RandomAccessFile raf;
+    private FileChannel channel;
+    private MappedByteBuffer[] chunks;
+    private int chunkBits;
+    private long length;
+
+    /**
+     * Map a file, creating it or extending it with zeros to the given
+     * length.
+     * 
+     * @param file
+     *            The file.
+     * @param length
+     *            The number of bytes to map.
+     * @throws IOException
+     */
+    public MappedFile(File file, long length) throws IOException {
+        this(file, length, CHUNK_BITS);
+    }
+
+
+    /**
+     * Map a file in chunks of the given size.
+     * 
+     * @param file
+     *            The file.
+     * @param length
+     *            The number of bytes to map.
+     * @param chunkBits
+     *            The chunk size as a power of two, at least 3.
+     * @throws IOException
+     */
+    MappedFile(File file, long length, int chunkBits) throws IOException {
+        this.file = file;
+        this.chunkBits = chunkBits;
+        raf = new RandomAccessFile(file, "rw");
+        channel = raf.getChannel();
+        chunks = new MappedByteBuffer[0];
+        grow(Math.max(length, raf.length()));
+    }
+
+
+    /**
+     * Return the file behind the map.
+     * 
+     * @return The file.
+     */
+    public File getFile() {
+        return file;
+    }
+
+
+    /**
+     * Return the number of bytes mapped.
+     * 
+     * @return The length.
+     */
+    public long length() {
+        return length;
+    }
+
+
+    /**
+     * Extend the file and the map to at least the given length. The new
+     * bytes are zero.
+     * 
+     * @param newLength
+     *            The new length.
+     * @throws IOException
+     */
+    public void grow(long newLength) throws IOException {
+        if (newLength <= length && chunks.length > 0) {
+            return;
+        }
+        newLength = Math.max(newLength, 1);
+        long chunkSize = 1L << chunkBits;
+        int count = (int)((newLength + chunkSize - 1) >>> chunkBits);
+        MappedByteBuffer[] grown = Arrays.copyOf(chunks, count);
+        // The last old chunk may be short, so it is mapped again
+        for (int i = Math.max(0, chunks.length - 1); i < count; i++) {
+            long start = (long)i << chunkBits;
+            grown[i] = channel.map(FileChannel.MapMode.READ_WRITE, start, Math
+                .min(chunkSize, newLength - start));
+        }
+        chunks = grown;
+        length = newLength;
+    }
+
+
+    /**
+     * Return the chunk holding a position.
+     * 
+     * @param pos
+     *            The position.
+     * @return The chunk.
+     */
+    private MappedByteBuffer chunk(long pos) {
+        return chunks[(int)(pos >>> chunkBits)];
+    }
+
+
+    /**
+     * Return the offset of a position within its chunk.
+     * 
+     * @param pos
+     *            The position.
+     * @return The offset.
+     */
+    private int offset(long pos) {
+        return (int)(pos & ((1L << chunkBits) - 1));
+    }
+
+
+    /**
+     * Read an int at a multiple of 4.
+     * 
+     * @param pos
+     *            The position.
+     * @return The value.
+     */
+    public int getInt(long pos) {
+        return chunk(pos).getInt(offset(pos));
+    }
+
+
+    /**
+     * Write an int at a multiple of 4.
+     * 
+     * @param pos
+     *            The position.
+     * @param value
+     *            The value.
+     */
+    public void putInt(long pos, int value) {
+        chunk(pos).putInt(offset(pos), value);
+    }
+
+
+    /**
+     * Read a long at a multiple of 8.
+     * 
+     * @param pos
+     *            The position.
+     * @return The value.
+     */
+    public long getLong(long pos) {
+        return chunk(pos).getLong(offset(pos));
+    }
+
+
+    /**
+     * Write a long at a multiple of 8.
+     * 
+     * @param pos
+     *            The position.
+     * @param value
+     *            The value.
+     */
+    public void putLong(long pos, long value) {
+        chunk(pos).putLong(offset(pos), value);
+    }
+
+
+    /**
+     * Read a char at a multiple of 2.
+     * 
+     * @param pos
+     *            The position.
+     * @return The value.
+     */
+    public char getChar(long pos) {
+        return chunk(pos).getChar(offset(pos));
+    }
+
+
+    /**
+     * Write a char at a multiple of 2.
+     * 
+     * @param pos
+     *            The position.
+     * @param value
+     *            The value.
+     */
+    public void putChar(long pos, char value) {
+        chunk(pos).putChar(offset(pos), value);
+    }
+
+
+    /**
+     * Write every changed page back to the file.
+     */
+    public void force() {
+        for (MappedByteBuffer chunk : chunks) {
+            chunk.force();
+        }
+    }
+
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+        raf.close();
+    }
+
+
+    /**
+     * Close the file and delete it. The pages stay mapped until the
+     * buffers are collected, but nothing reads them any more.
+     * 
+     * @throws IOException
+     */
+    public void delete() throws IOException {
+        close();
+        file.delete();
+    }
+}
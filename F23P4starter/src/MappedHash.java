@@ -0,0 +1,441 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * The mapped Hash table keeps its slots and keys in memory mapped files
+ * instead of the heap, laid out like the packed table. Each slot takes 24
+ * bytes: the folded sum of its key, where its key starts in the key file
+ * plus one (0 for an empty slot, -1 for a tombstone), the key length and
+ * the value. The keys are stored end to end as chars in a second file.
+ * Only the counters stay on the heap, so a table much larger than the heap
+ * is paged in and out by the OS.
+ * 
+ * It probes the same quadratic sequence as Hash and prints the same
+ * messages. The files are temporary and only reached through their maps:
+ * each is unlinked as soon as it is mapped, so the OS frees its space
+ * once the table lets go of it, even if the program is killed. Where a
+ * mapped file cannot be deleted, it stays until a rehash replaces it.
+ *
+ * @author Yu-Kai Lo
+ * @version 1.0
+ */
+public class MappedHash implements SymbolTable {
+    private static final long EMPTY = 0;
+    private static final long TOMBSTONE = -1;
+    private static final int SLOT_BYTES = 24;
+    private static final int HASH = 0;
+    private static final int START = 8;
+    private static final int LENGTH = 16;
+    private static final int VALUE = 20;
+
+    private MappedFile slots;
+    private MappedFile keys;
+    private long keysEnd; // Bytes used in the key file
+    private long liveChars;
+    private int size;
+    private int tombstones;
+    private int tableSize;
+    private String type;
+    private OutputSink output;
+    private File dir;
+    private int chunkBits;
+
+    /**
+     * Constructs a new mapped HashTable with its files in the temporary
+     * directory.
+     *
+     * @param inputTableSize
+     *            The initial size of the hash table.
+     * @param type
+     *            The type of the hash table.
+     * @param output
+     *            The sink for the messages.
+     * @throws IOException
+     */
+    public MappedHash(int inputTableSize, String type, OutputSink output)
+        throws IOException {
+        this(inputTableSize, type, output, null, MappedFile.CHUNK_BITS);
+    }
+
+
+    /**
+     * Constructs a new mapped HashTable with its files in a directory.
+     *
+     * @param inputTableSize
+     *            The initial size of the hash table.
+     * @param type
+     *            The type of the hash table.
+     * @param output
+     *            The sink for the messages.
+     * @param dir
+     *            The directory for the files, or null for the temporary
+     *            directory.
+     * @param chunkBits
+     *            The size of each mapped chunk as a power of two.
+     * @throws IOException
+     */
+    MappedHash(int inputTableSize, String type, OutputSink output, File dir,
+        int chunkBits) throws IOException {
+        this.type = type;
+        this.output = output;
+        this.dir = dir;
+        this.chunkBits = chunkBits;
+        tableSize = inputTableSize;
+        slots = newFile(".slots", (long)tableSize * SLOT_BYTES);
+        keys = newFile(".keys", Math.max(64, (long)tableSize * 16));
+    }
+
+
+    /**
+     * Create and map a new temporary file, and unlink it.
+     * 
+     * @param suffix
+     *            The end of the file name.
+     * @param length
+     *            The number of bytes to map.
+     * @return The mapped file.
+     * @throws IOException
+     */
+    private MappedFile newFile(String suffix, long length)
+        throws IOException {
+        File file = File.createTempFile(type, suffix, dir);
+        MappedFile mapped = new MappedFile(file, length, chunkBits);
+        file.delete();
+        return mapped;
+    }
+
+
+    /**
+     * Return the start of a slot's key plus one, or a marker.
+     * 
+     * @param pos
+     *            The slot.
+     * @return The start.
+     */
+    private long start(int pos) {
+        return slots.getLong((long)pos * SLOT_BYTES + START);
+    }
+
+
+    @Override
+    public int hashGet(String key, long hash) {
+        int pos = find(key, hash);
+        return pos < 0 ? NOT_FOUND : slots.getInt((long)pos * SLOT_BYTES
+            + VALUE);
+    }
+
+
+    @Override
+    public void hashInsert(String key, long hash, int value)
+        throws Exception {
+        if (size >= tableSize / 2) {
+            resize();
+        }
+        int home = Hash.slot(hash, tableSize);
+        int pos = home;
+
+        int probeCount = 0;
+        while (start(pos) != EMPTY && probeCount < tableSize) {
+            if (start(pos) == TOMBSTONE) {
+                tombstones--;
+                break;
+            }
+            if (matches(pos, key, hash)) {
+                return;
+            }
+            pos = (home + probeCount * probeCount) % tableSize;
+            probeCount++;
+        }
+
+        if (probeCount == tableSize) {
+            resize();
+            hashInsert(key, hash, value);
+            return;
+        }
+
+        set(slots, pos, append(key), key.length(), hash, value);
+        liveChars += key.length();
+        size++;
+        output.write(OutputSink.Event.ADDED, "|" + key + "| is added to the "
+            + type + " database.");
+    }
+
+
+    @Override
+    public void hashDelete(String key) {
+        int pos = find(key, Hash.fold(key));
+        if (pos < 0) {
+            return;
+        }
+        long slot = (long)pos * SLOT_BYTES;
+        liveChars -= slots.getInt(slot + LENGTH);
+        slots.putLong(slot + START, TOMBSTONE);
+        size--;
+        tombstones++;
+        output.write(OutputSink.Event.REMOVED, "|" + key
+            + "| is removed from the " + type + " database.");
+        if (tombstones > tableSize / 4) {
+            try {
+                rehash(tableSize);
+            }
+            catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+
+    /**
+     * Find the slot holding a key by quadratic probing.
+     * 
+     * @param key
+     *            The key to search for.
+     * @param hash
+     *            The folded sum of the key.
+     * @return The slot of the key, or -1 if it is not there.
+     */
+    private int find(String key, long hash) {
+        int home = Hash.slot(hash, tableSize);
+        int pos = home;
+        int probeCount = 0;
+
+        while (start(pos) != EMPTY && probeCount < tableSize) {
+            if (start(pos) != TOMBSTONE && matches(pos, key, hash)) {
+                return pos;
+            }
+            pos = (home + probeCount * probeCount) % tableSize;
+            probeCount++;
+        }
+        return -1;
+    }
+
+
+    /**
+     * Check whether a used slot holds a key.
+     * 
+     * @param pos
+     *            The slot.
+     * @param key
+     *            The key.
+     * @param hash
+     *            The folded sum of the key.
+     * @return True if the slot holds the key.
+     */
+    private boolean matches(int pos, String key, long hash) {
+        long slot = (long)pos * SLOT_BYTES;
+        if (slots.getLong(slot + HASH) != hash || slots.getInt(slot
+            + LENGTH) != key.length()) {
+            return false;
+        }
+        long start = slots.getLong(slot + START) - 1;
+        for (int i = 0; i < key.length(); i++) {
+            if (keys.getChar(start + 2L * i) != key.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+
+    /**
+     * Return the key of a used slot.
+     * 
+     * @param pos
+     *            The slot.
+     * @return The key.
+     */
+    private String key(int pos) {
+        long slot = (long)pos * SLOT_BYTES;
+        long start = slots.getLong(slot + START) - 1;
+        char[] chars = new char[slots.getInt(slot + LENGTH)];
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = keys.getChar(start + 2L * i);
+        }
+        return new String(chars);
+    }
+
+
+    /**
+     * Copy a key to the end of the key file, growing it as needed.
+     * 
+     * @param key
+     *            The key.
+     * @return The start of the key plus one.
+     * @throws IOException
+     */
+    private long append(String key) throws IOException {
+        long needed = keysEnd + 2L * key.length();
+        if (needed > keys.length()) {
+            keys.grow(Math.max(keys.length() * 2, needed));
+        }
+        long start = keysEnd;
+        for (int i = 0; i < key.length(); i++) {
+            keys.putChar(start + 2L * i, key.charAt(i));
+        }
+        keysEnd = needed;
+        return start + 1;
+    }
+
+
+    /**
+     * Fill in one slot.
+     * 
+     * @param file
+     *            The slot file.
+     * @param pos
+     *            The slot.
+     * @param start
+     *            The start of the key plus one.
+     * @param length
+     *            The length of the key.
+     * @param hash
+     *            The folded sum of the key.
+     * @param value
+     *            The value.
+     */
+    private static void set(MappedFile file, int pos, long start, int length,
+        long hash, int value) {
+        long slot = (long)pos * SLOT_BYTES;
+        file.putLong(slot + HASH, hash);
+        file.putLong(slot + START, start);
+        file.putInt(slot + LENGTH, length);
+        file.putInt(slot + VALUE, value);
+    }
+
+
+    /**
+     * Double the table until every record fits, printing a message for each
+     * doubling, as Hash does.
+     * 
+     * @throws IOException
+     */
+    private void resize() throws IOException {
+        int newSize = tableSize;
+        boolean placed = false;
+        while (!placed) {
+            newSize = newSize * 2;
+            placed = rehash(newSize);
+            output.write(OutputSink.Event.RESIZED, type
+                + " hash table size doubled.");
+        }
+    }
+
+
+    /**
+     * Place every live key into new files of the given size, in slot
+     * order, packing the keys with no gaps. The table is left as it was if
+     * a key cannot be placed.
+     * 
+     * @param newSize
+     *            The size of the new table.
+     * @return False if a key could not be placed.
+     * @throws IOException
+     */
+    private boolean rehash(int newSize) throws IOException {
+        MappedFile newSlots = newFile(".slots", (long)newSize * SLOT_BYTES);
+        MappedFile newKeys = newFile(".keys", Math.max(64, 3 * liveChars));
+        long newEnd = 0;
+        for (int i = 0; i < tableSize; i++) {
+            long slot = (long)i * SLOT_BYTES;
+            long start = slots.getLong(slot + START);
+            if (start == EMPTY || start == TOMBSTONE) {
+                continue;
+            }
+            long hash = slots.getLong(slot + HASH);
+            int home = Hash.slot(hash, newSize);
+            int pos = home;
+            int probeCount = 0;
+            while (newSlots.getLong((long)pos * SLOT_BYTES + START) != EMPTY
+                && probeCount < newSize) {
+                pos = (home + probeCount * probeCount) % newSize;
+                probeCount++;
+            }
+            if (probeCount == newSize) {
+                newSlots.delete();
+                newKeys.delete();
+                return false;
+            }
+            int length = slots.getInt(slot + LENGTH);
+            for (int k = 0; k < length; k++) {
+                newKeys.putChar(newEnd + 2L * k, keys.getChar(start - 1 + 2L
+                    * k));
+            }
+            set(newSlots, pos, newEnd + 1, length, hash, slots.getInt(slot
+                + VALUE));
+            newEnd += 2L * length;
+        }
+        slots.delete();
+        keys.delete();
+        slots = newSlots;
+        keys = newKeys;
+        keysEnd = newEnd;
+        tableSize = newSize;
+        tombstones = 0;
+        return true;
+    }
+
+
+    @Override
+    public void remap(int[] newIds) {
+        for (int i = 0; i < tableSize; i++) {
+            long slot = (long)i * SLOT_BYTES;
+            long start = slots.getLong(slot + START);
+            if (start != EMPTY && start != TOMBSTONE) {
+                slots.putInt(slot + VALUE, newIds[slots.getInt(slot
+                    + VALUE)]);
+            }
+        }
+    }
+
+
+    @Override
+    public void hashPrintHashtable() {
+        for (int i = 0; i < tableSize; i++) {
+            if (start(i) == TOMBSTONE) {
+                output.write(OutputSink.Event.SLOT, i + ": TOMBSTONE");
+            }
+            else if (start(i) != EMPTY) {
+                output.write(OutputSink.Event.SLOT, i + ": |" + key(i) + "|");
+            }
+        }
+        output.write(OutputSink.Event.TOTAL, "total " + type.toLowerCase()
+            + "s: " + size);
+    }
+
+
+    @Override
+    public int capacity() {
+        return tableSize;
+    }
+
+
+    @Override
+    public void visitSlots(SlotVisitor visitor) throws IOException {
+        for (int i = 0; i < tableSize; i++) {
+            long slot = (long)i * SLOT_BYTES;
+            if (start(i) == TOMBSTONE) {
+                visitor.visit(i, null, 0, 0);
+            }
+            else if (start(i) != EMPTY) {
+                visitor.visit(i, key(i), slots.getLong(slot + HASH), slots
+                    .getInt(slot + VALUE));
+            }
+        }
+    }
+
+
+    @Override
+    public void restoreSlot(int pos, String key, long hash, int value)
+        throws IOException {
+        if (key == null) {
+            slots.putLong((long)pos * SLOT_BYTES + START, TOMBSTONE);
+            tombstones++;
+        }
+        else {
+            set(slots, pos, append(key), key.length(), hash, value);
+            liveChars += key.length();
+            size++;
+        }
+    }
+}
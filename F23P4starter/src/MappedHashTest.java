@@ -0,0 +1,67 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import student.TestCase;
+
+/**
+ * This class was designed to test the memory mapped Hash table.
+ *
+ * @author Yu-Kai Lo
+ * @version 1.0
+ */
+public class MappedHashTest extends TestCase {
+
+    /**
+     * This test tries to churn through enough keys, with chunks small
+     * enough, that slots and keys spread over many mapped chunks. No file
+     * is left behind by the many rehashes.
+     * 
+     * @throws Exception
+     */
+    public void testChurn() throws Exception {
+        File dir = Files.createTempDirectory("mapped").toFile();
+        dir.deleteOnExit();
+        EventSink events = new EventSink();
+        MappedHash table = new MappedHash(4, "Song", events, dir, 10);
+        for (int i = 0; i < 5000; i++) {
+            String key = "Song " + i;
+            table.hashInsert(key, Hash.fold(key), i);
+            if (i >= 10) {
+                table.hashDelete("Song " + (i - 10));
+            }
+        }
+        for (int i = 0; i < 5000; i++) {
+            String key = "Song " + i;
+            int expected = i < 4990 ? SymbolTable.NOT_FOUND : i;
+            assertEquals(expected, table.hashGet(key, Hash.fold(key)));
+        }
+        table.hashPrintHashtable();
+        assertEquals("total songs: 10", events.line(events.size() - 1));
+        assertEquals(0, dir.list().length);
+    }
+
+
+    /**
+     * This test tries to map a file that does not fit one chunk and read
+     * values across the boundary.
+     * 
+     * @throws IOException
+     */
+    public void testChunks() throws IOException {
+        File path = File.createTempFile("chunks", ".map");
+        path.deleteOnExit();
+        MappedFile file = new MappedFile(path, 100, 5);
+        for (int i = 0; i < 12; i++) {
+            file.putLong(8L * i, i * 1000000007L);
+        }
+        file.grow(1000);
+        file.putChar(998, 'x');
+        for (int i = 0; i < 12; i++) {
+            assertEquals(i * 1000000007L, file.getLong(8L * i));
+        }
+        assertEquals('x', file.getChar(998));
+        assertEquals(1000, path.length());
+        file.delete();
+        assertFalse(path.exists());
+    }
+}
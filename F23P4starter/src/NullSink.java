@@ -0,0 +1,21 @@
+/**
+ * The NullSink class drops every output line. It is for benchmarks, where
+ * writing the messages would cost more than the work being measured.
+ *
+ * @author Yu-Kai Lo
+ * @version 1.0
+ */
+public class NullSink implements OutputSink {
+
+    @Override
+    public void write(Event event, String line) {
+        // Nothing to write.
+    }
+
+
+    @Override
+    public void flush() {
+        // Nothing to flush.
+    }
+
+}
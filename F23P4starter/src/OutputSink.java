@@ -0,0 +1,52 @@
+/**
+ * The interface of the place where the database writes its messages.
+ * Each message is one line of text tagged with the kind of event it
+ * reports, so a sink can print it, buffer it, drop it or keep it as data.
+ *
+ * @author Yu-Kai Lo
+ * @version 1.0
+ */
+public interface OutputSink {
+    /**
+     * The kinds of messages the database writes.
+     */
+    enum Event {
+        /** A key was added to a hash table. */
+        ADDED,
+        /** A key was removed from a hash table. */
+        REMOVED,
+        /** An artist and song pair was already in the database. */
+        DUPLICATE,
+        /** A key to remove was not in its hash table. */
+        NOT_FOUND,
+        /** A hash table doubled in size. */
+        RESIZED,
+        /** One slot of a printed hash table. */
+        SLOT,
+        /** The record count at the end of a printed hash table. */
+        TOTAL,
+        /** One line of the printed graph statistics. */
+        GRAPH,
+        /** One line of a printed path between two records. */
+        PATH,
+        /** A message from the parser. */
+        MESSAGE
+    }
+
+    /**
+     * Write one line of output.
+     * 
+     * @param event
+     *            The kind of event the line reports.
+     * @param line
+     *            The text of the line, without a line end.
+     */
+    void write(Event event, String line);
+
+
+    /**
+     * Push any buffered lines out.
+     */
+    void flush();
+
+}
@@ -0,0 +1,342 @@
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * The packed Hash table keeps no Record objects. The characters of all
+ * keys sit end to end in one char arena, and each slot is an entry in
+ * parallel arrays: where its key starts in the arena, how long it is, its
+ * folded sum and its value. A table of n slots is then a handful of
+ * arrays instead of n Records and n Strings for the collector to scan.
+ * 
+ * It probes the same quadratic sequence as Hash, leaves the same
+ * tombstones behind and doubles in one pass as Hash does, so it holds
+ * and prints the same keys in the same slots. The arena only grows on
+ * insert; the space of deleted keys is given back when the table is
+ * rehashed.
+ *
+ * @author Yu-Kai Lo
+ * @version 1.0
+ */
+public class PackedHash implements SymbolTable {
+    /**
+     * The start of an empty slot.
+     */
+    private static final int EMPTY = 0;
+
+    /**
+     * The start of a slot whose key was deleted.
+     */
+    private static final int TOMBSTONE = -1;
+
+    private int[] starts; // Arena offset of each key plus one, or a marker
+    private int[] lengths;
+    private long[] hashes;
+    private int[] values;
+    private char[] arena;
+    private int arenaEnd;
+    private int liveChars;
+    private int size;
+    private int tombstones;
+    private int tableSize;
+    private String type;
+    private OutputSink output;
+
+    /**
+     * Constructs a new packed HashTable that writes its messages to a sink.
+     *
+     * @param inputTableSize
+     *            The initial size of the hash table.
+     * @param type
+     *            The type of the hash table.
+     * @param output
+     *            The sink for the messages.
+     */
+    public PackedHash(int inputTableSize, String type, OutputSink output) {
+        tableSize = inputTableSize;
+        starts = new int[tableSize];
+        lengths = new int[tableSize];
+        hashes = new long[tableSize];
+        values = new int[tableSize];
+        arena = new char[Math.max(16, tableSize * 8)];
+        this.type = type;
+        this.output = output;
+    }
+
+
+    @Override
+    public int hashGet(String key, long hash) {
+        int pos = find(key, hash);
+        return pos < 0 ? NOT_FOUND : values[pos];
+    }
+
+
+    @Override
+    public void hashInsert(String key, long hash, int value)
+        throws Exception {
+        if (size >= tableSize / 2) {
+            resize();
+        }
+        int home = Hash.slot(hash, tableSize);
+        int pos = home;
+
+        int probeCount = 0;
+        while (starts[pos] != EMPTY && probeCount < tableSize) {
+            if (starts[pos] == TOMBSTONE) {
+                tombstones--;
+                break;
+            }
+            if (matches(pos, key, hash)) {
+                return;
+            }
+            pos = (home + probeCount * probeCount) % tableSize;
+            probeCount++;
+        }
+
+        if (probeCount == tableSize) {
+            resize();
+            hashInsert(key, hash, value);
+            return;
+        }
+
+        set(pos, append(key), key.length(), hash, value);
+        liveChars += key.length();
+        size++;
+        output.write(OutputSink.Event.ADDED, "|" + key + "| is added to the "
+            + type + " database.");
+    }
+
+
+    @Override
+    public void hashDelete(String key) {
+        int pos = find(key, Hash.fold(key));
+        if (pos < 0) {
+            return;
+        }
+        liveChars -= lengths[pos];
+        starts[pos] = TOMBSTONE;
+        size--;
+        tombstones++;
+        output.write(OutputSink.Event.REMOVED, "|" + key
+            + "| is removed from the " + type + " database.");
+        if (tombstones > tableSize / 4) {
+            rehash(tableSize);
+        }
+    }
+
+
+    /**
+     * Find the slot holding a key by quadratic probing.
+     * 
+     * @param key
+     *            The key to search for.
+     * @param hash
+     *            The folded sum of the key.
+     * @return The slot of the key, or -1 if it is not there.
+     */
+    private int find(String key, long hash) {
+        int home = Hash.slot(hash, tableSize);
+        int pos = home;
+        int probeCount = 0;
+
+        while (starts[pos] != EMPTY && probeCount < tableSize) {
+            if (starts[pos] != TOMBSTONE && matches(pos, key, hash)) {
+                return pos;
+            }
+            pos = (home + probeCount * probeCount) % tableSize;
+            probeCount++;
+        }
+        return -1;
+    }
+
+
+    /**
+     * Check whether a used slot holds a key, comparing the folded sums
+     * first and the characters in the arena only when they agree.
+     * 
+     * @param pos
+     *            The slot.
+     * @param key
+     *            The key.
+     * @param hash
+     *            The folded sum of the key.
+     * @return True if the slot holds the key.
+     */
+    private boolean matches(int pos, String key, long hash) {
+        if (hashes[pos] != hash || lengths[pos] != key.length()) {
+            return false;
+        }
+        int start = starts[pos] - 1;
+        for (int i = 0; i < lengths[pos]; i++) {
+            if (arena[start + i] != key.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+
+    /**
+     * Copy a key to the end of the arena, growing it as needed.
+     * 
+     * @param key
+     *            The key.
+     * @return The arena offset of the key plus one.
+     */
+    private int append(String key) {
+        if (arenaEnd + key.length() > arena.length) {
+            arena = Arrays.copyOf(arena, Math.max(arena.length * 2, arenaEnd
+                + key.length()));
+        }
+        key.getChars(0, key.length(), arena, arenaEnd);
+        arenaEnd += key.length();
+        return arenaEnd - key.length() + 1;
+    }
+
+
+    /**
+     * Fill in every array of one slot.
+     * 
+     * @param pos
+     *            The slot.
+     * @param start
+     *            The arena offset of the key plus one.
+     * @param length
+     *            The length of the key.
+     * @param hash
+     *            The folded sum of the key.
+     * @param value
+     *            The value.
+     */
+    private void set(int pos, int start, int length, long hash, int value) {
+        starts[pos] = start;
+        lengths[pos] = length;
+        hashes[pos] = hash;
+        values[pos] = value;
+    }
+
+
+    /**
+     * Double the table until every record fits, printing a message for each
+     * doubling, as Hash does.
+     */
+    private void resize() {
+        int newSize = tableSize;
+        boolean placed = false;
+        while (!placed) {
+            newSize = newSize * 2;
+            placed = rehash(newSize);
+            output.write(OutputSink.Event.RESIZED, type
+                + " hash table size doubled.");
+        }
+    }
+
+
+    /**
+     * Place every live key into new arrays of the given size, in slot
+     * order, and copy their characters into a new arena with no gaps. The
+     * table is left as it was if a key cannot be placed.
+     * 
+     * @param newSize
+     *            The size of the new table.
+     * @return False if a key could not be placed.
+     */
+    private boolean rehash(int newSize) {
+        int[] newStarts = new int[newSize];
+        int[] newLengths = new int[newSize];
+        long[] newHashes = new long[newSize];
+        int[] newValues = new int[newSize];
+        char[] newArena = new char[Math.max(16, liveChars + liveChars / 2)];
+        int newEnd = 0;
+        for (int i = 0; i < tableSize; i++) {
+            if (starts[i] == EMPTY || starts[i] == TOMBSTONE) {
+                continue;
+            }
+            int home = Hash.slot(hashes[i], newSize);
+            int pos = home;
+            int probeCount = 0;
+            while (newStarts[pos] != EMPTY && probeCount < newSize) {
+                pos = (home + probeCount * probeCount) % newSize;
+                probeCount++;
+            }
+            if (probeCount == newSize) {
+                return false;
+            }
+            System.arraycopy(arena, starts[i] - 1, newArena, newEnd,
+                lengths[i]);
+            newStarts[pos] = newEnd + 1;
+            newLengths[pos] = lengths[i];
+            newHashes[pos] = hashes[i];
+            newValues[pos] = values[i];
+            newEnd += lengths[i];
+        }
+        starts = newStarts;
+        lengths = newLengths;
+        hashes = newHashes;
+        values = newValues;
+        arena = newArena;
+        arenaEnd = newEnd;
+        tableSize = newSize;
+        tombstones = 0;
+        return true;
+    }
+
+
+    @Override
+    public void remap(int[] newIds) {
+        for (int i = 0; i < tableSize; i++) {
+            if (starts[i] != EMPTY && starts[i] != TOMBSTONE) {
+                values[i] = newIds[values[i]];
+            }
+        }
+    }
+
+
+    @Override
+    public void hashPrintHashtable() {
+        for (int i = 0; i < tableSize; i++) {
+            if (starts[i] == TOMBSTONE) {
+                output.write(OutputSink.Event.SLOT, i + ": TOMBSTONE");
+            }
+            else if (starts[i] != EMPTY) {
+                output.write(OutputSink.Event.SLOT, i + ": |" + new String(
+                    arena, starts[i] - 1, lengths[i]) + "|");
+            }
+        }
+        output.write(OutputSink.Event.TOTAL, "total " + type.toLowerCase()
+            + "s: " + size);
+    }
+
+
+    @Override
+    public int capacity() {
+        return tableSize;
+    }
+
+
+    @Override
+    public void visitSlots(SlotVisitor visitor) throws IOException {
+        for (int i = 0; i < tableSize; i++) {
+            if (starts[i] == TOMBSTONE) {
+                visitor.visit(i, null, 0, 0);
+            }
+            else if (starts[i] != EMPTY) {
+                visitor.visit(i, new String(arena, starts[i] - 1, lengths[i]),
+                    hashes[i], values[i]);
+            }
+        }
+    }
+
+
+    @Override
+    public void restoreSlot(int pos, String key, long hash, int value) {
+        if (key == null) {
+            starts[pos] = TOMBSTONE;
+            tombstones++;
+        }
+        else {
+            set(pos, append(key), key.length(), hash, value);
+            liveChars += key.length();
+            size++;
+        }
+    }
+}
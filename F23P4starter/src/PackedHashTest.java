@@ -0,0 +1,83 @@
+import student.TestCase;
+
+/**
+ * This class was designed to test the packed Hash table.
+ *
+ * @author Yu-Kai Lo
+ * @version 1.0
+ */
+public class PackedHashTest extends TestCase {
+    private EventSink events;
+    private PackedHash table;
+
+    /**
+     * Sets up the tests that follow.
+     */
+    public void setUp() {
+        events = new EventSink();
+        table = new PackedHash(4, "Song", events);
+    }
+
+
+    /**
+     * Insert a key, computing its folded sum.
+     * 
+     * @param key
+     *            The key.
+     * @param value
+     *            The value.
+     * @throws Exception
+     */
+    private void insert(String key, int value) throws Exception {
+        table.hashInsert(key, Hash.fold(key), value);
+    }
+
+
+    /**
+     * This test tries to find keys made of the same characters, the empty
+     * key and a key spelled like the tombstone.
+     * 
+     * @throws Exception
+     */
+    public void testKeys() throws Exception {
+        insert("ab", 1);
+        insert("ba", 2);
+        insert("", 3);
+        insert("TOMBSTONE", 4);
+        insert("ab", 5);
+        assertEquals(1, table.hashGet("ab", Hash.fold("ab")));
+        assertEquals(2, table.hashGet("ba", Hash.fold("ba")));
+        assertEquals(3, table.hashGet("", 0));
+        assertEquals(4, table.hashGet("TOMBSTONE", Hash.fold("TOMBSTONE")));
+        assertEquals(SymbolTable.NOT_FOUND, table.hashGet("abc", Hash.fold(
+            "abc")));
+        table.hashPrintHashtable();
+        assertEquals("total songs: 4", events.line(events.size() - 1));
+    }
+
+
+    /**
+     * This test tries to churn through many keys so the arena is packed
+     * again on rehash, then remaps the values.
+     * 
+     * @throws Exception
+     */
+    public void testChurn() throws Exception {
+        for (int i = 0; i < 20000; i++) {
+            insert("Song " + i, i);
+            if (i >= 10) {
+                table.hashDelete("Song " + (i - 10));
+            }
+        }
+        int[] newIds = new int[20000];
+        for (int i = 0; i < newIds.length; i++) {
+            newIds[i] = i + 1;
+        }
+        table.remap(newIds);
+        for (int i = 0; i < 20000; i++) {
+            int expected = i < 19990 ? SymbolTable.NOT_FOUND : i + 1;
+            assertEquals(expected, table.hashGet("Song " + i, Hash.fold(
+                "Song " + i)));
+        }
+    }
+}
@@ -7,7 +7,8 @@
  */
 public class ParPtrTree {
     private int[] array; // Node array
-    private int[] size;
+    private int[] size; // Only valid at the roots
+    private int count; // Number of trees
 
     /**
      * Initialize the parent pointer tree.
@@ -22,11 +23,13 @@ public class ParPtrTree {
             array[i] = -1; // Each node is its own root to start
             this.size[i] = 1;
         }
+        count = size;
     }
 
 
     /**
-     * Merge two subtrees if they are different.
+     * Merge two subtrees if they are different. The smaller tree is hung
+     * under the root of the larger one, so trees stay O(log n) deep.
      * 
      * @param a
      *            The first node.
@@ -37,24 +40,71 @@ public class ParPtrTree {
         int root1 = find(a); // Find root of node a
         int root2 = find(b); // Find root of node b
         if (root1 != root2) { // Merge two trees
+            if (size[root1] > size[root2]) {
+                int temp = root1;
+                root1 = root2;
+                root2 = temp;
+            }
             array[root1] = root2;
             size[root2] += size[root1];
+            count--;
         }
     }
 
 
     /**
-     * Return the root of curr's tree.
+     * Return the root of curr's tree. Every node on the way is pointed
+     * directly at the root.
      * 
      * @param curr
      *            The current node.
      * @return The root of current node's tree.
      */
     public int find(int curr) {
-        while (array[curr] != -1) {
-            curr = array[curr];
+        int root = curr;
+        while (array[root] != -1) {
+            root = array[root];
         }
-        return curr; // Now at root
+        while (array[curr] != -1 && array[curr] != root) {
+            int next = array[curr];
+            array[curr] = root;
+            curr = next;
+        }
+        return root; // Now at root
+    }
+
+
+    /**
+     * Return the parent of a node, without moving it.
+     * 
+     * @param curr
+     *            The current node.
+     * @return The parent, or -1 at a root.
+     */
+    int parent(int curr) {
+        return array[curr];
+    }
+
+
+    /**
+     * Return the number of nodes in curr's tree.
+     * 
+     * @param curr
+     *            The current node.
+     * @return The size of the tree holding the node.
+     */
+    public int componentSize(int curr) {
+        return size[find(curr)];
+    }
+
+
+    /**
+     * Return the number of separate trees.
+     * 
+     * @return The number of trees.
+     */
+    public int componentCount() {
+        return count;
     }
 
 }
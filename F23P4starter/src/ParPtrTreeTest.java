@@ -0,0 +1,70 @@
+import student.TestCase;
+
+/**
+ * This class was designed to test the parent pointer tree.
+ *
+ * @author Yu-Kai Lo
+ * @version 1.0
+ */
+public class ParPtrTreeTest extends TestCase {
+    private ParPtrTree tree;
+
+    /**
+     * Sets up the tests that follow.
+     */
+    public void setUp() {
+        tree = new ParPtrTree(10);
+    }
+
+
+    /**
+     * This test tries to merge trees and read their sizes.
+     */
+    public void testUnion() {
+        assertEquals(10, tree.componentCount());
+        tree.union(0, 1);
+        tree.union(2, 3);
+        tree.union(1, 3);
+        tree.union(0, 2);
+        assertEquals(tree.find(0), tree.find(3));
+        assertFalse(tree.find(0) == tree.find(4));
+        assertEquals(4, tree.componentSize(2));
+        assertEquals(1, tree.componentSize(9));
+        assertEquals(7, tree.componentCount());
+    }
+
+
+    /**
+     * This test tries to build a tree as deep as union by size allows, by
+     * merging the roots of trees of the same size level by level, so no
+     * find compresses a path on the way. One find must then point every
+     * node on its path directly at the root.
+     */
+    public void testDeepTree() {
+        int levels = 20;
+        int n = 1 << levels;
+        tree = new ParPtrTree(n);
+        for (int step = 1; step < n; step *= 2) {
+            for (int i = 0; i + step < n; i += 2 * step) {
+                tree.union(i + step - 1, i + 2 * step - 1);
+            }
+        }
+        assertEquals(1, tree.componentCount());
+
+        int[] path = new int[levels + 1];
+        int depth = 0;
+        for (int v = 0; v != -1; v = tree.parent(v)) {
+            path[depth++] = v;
+        }
+        assertEquals(levels + 1, depth);
+        int root = path[levels];
+        assertEquals(n - 1, root);
+
+        assertEquals(root, tree.find(0));
+        for (int i = 0; i < levels; i++) {
+            assertEquals(root, tree.parent(path[i]));
+        }
+        assertEquals(-1, tree.parent(root));
+        assertEquals(n, tree.componentSize(n / 2));
+    }
+}
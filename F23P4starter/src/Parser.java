@@ -1,6 +1,8 @@
-import java.io.File;
 import java.io.FileNotFoundException;
-import java.util.Scanner;
+import java.nio.charset.Charset;
+import java.util.InputMismatchException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
 
 /**
  * The Parser class is for parsing commands and data from a given input file and
@@ -11,7 +13,9 @@ import java.util.Scanner;
  */
 public class Parser {
 
-    private Database database;
+    protected Database database;
+    private OutputSink output;
+    private boolean bulk;
 
     /**
      * Create a new Parser with the specified Database.
@@ -20,7 +24,24 @@ public class Parser {
      *            The Database to perform actions on.
      */
     public Parser(Database database) {
+        this(database, false);
+    }
+
+
+    /**
+     * Create a new Parser that may hand each run of inserts to
+     * Database.bulkInsert at once. It prints the same as inserting them one
+     * at a time.
+     *
+     * @param database
+     *            The Database to perform actions on.
+     * @param bulk
+     *            Whether to insert runs of inserts in bulk.
+     */
+    public Parser(Database database, boolean bulk) {
         this.database = database;
+        output = database.getOutput();
+        this.bulk = bulk;
     }
 
 
@@ -35,73 +56,332 @@ public class Parser {
      */
     public void fileparser(String inputFile) throws Exception {
         try {
-            Scanner sc = new Scanner(new File(inputFile));
-            while (sc.hasNext()) {
-                String cmd = sc.next();
-                String artist;
-                String song;
-                String item;
-                String type;
-
-                switch (cmd) {
-                    case "debug":
-                        System.out.println("debug cmd activated");
-                        break;
-
-                    case "insert":
-                        String[] s = sc.nextLine().split("<SEP>");
-                        artist = s[0].trim();
-                        song = s[1].trim();
-
-                        database.insert(artist, song);
-                        break;
-
-                    case "remove":
-                        type = sc.next();
-                        item = sc.nextLine().trim();
-
-                        if (type.equals("song")) {
-                            database.removeSong(item);
-                        }
-                        else if (type.equals("artist")) {
-                            database.removeArtist(item);
-                        }
-                        else {
-                            System.out.println("Unrecognized input " + cmd);
-                        }
-                        break;
+            parse(inputFile);
+        }
+        catch (FileNotFoundException e) {
+            output.write(OutputSink.Event.MESSAGE, "No such file.");
+            throw e;
+        }
+        catch (Exception e) {
+            output.write(OutputSink.Event.MESSAGE,
+                "An error occurs while reading the file.");
+            throw e;
+        }
 
-                    case "print":
-                        type = sc.next();
-                        if (type.equals("song")) {
-                            database.printSong();
-                        }
-                        else if (type.equals("artist")) {
-                            database.printArtist();
-                        }
-                        else if (type.equals("graph")) {
-                            database.printGraph();
+    }
+
+
+    /**
+     * Read and run every command in the file, one after another.
+     * 
+     * @param inputFile
+     *            The input file to be parsed.
+     * @throws Exception
+     */
+    protected void parse(String inputFile) throws Exception {
+        try (CommandReader sc = new CommandReader(inputFile)) {
+            Command pending = null;
+            while (pending != null || sc.hasNext()) {
+                Command command = pending != null ? pending : read(sc, false);
+                pending = null;
+                if (bulk && command.error == null
+                    && command.name.equals("insert")) {
+                    InsertRun run = new InsertRun(sc, command);
+                    database.bulkInsert(run, true);
+                    pending = run.stop;
+                }
+                else {
+                    execute(command);
+                }
+            }
+        }
+    }
+
+
+    /**
+     * Read one command and the arguments it takes.
+     * 
+     * @param sc
+     *            The reader, at the start of a command.
+     * @param rawInsert
+     *            Whether to keep an insert's line as raw bytes, to be split
+     *            later by resolve().
+     * @return The command.
+     * @throws Exception
+     */
+    static Command read(CommandReader sc, boolean rawInsert)
+        throws Exception {
+        Command command = new Command();
+        command.name = sc.next();
+        switch (command.name) {
+            case "insert":
+                if (rawInsert) {
+                    command.line = sc.nextLineBytes();
+                }
+                else {
+                    String[] s = sc.nextPair();
+                    command.artist = s[0];
+                    command.song = s[1];
+                }
+                break;
+
+            case "remove":
+                command.type = sc.next();
+                command.item = sc.nextLine().trim();
+                break;
+
+            case "print":
+                command.type = sc.next();
+                break;
+
+            case "save":
+            case "load":
+                command.item = sc.nextLine().trim();
+                break;
+
+            case "path":
+                byte[] line = sc.nextLineBytes();
+                String[] ends;
+                try {
+                    ends = CommandReader.pair(line, line.length, Charset
+                        .defaultCharset());
+                }
+                catch (InputMismatchException e) {
+                    // Names hold spaces, so without <SEP> the two ends
+                    // cannot be told apart; execute() rejects the command
+                    ends = new String[] { "", "" };
+                }
+                String[] first = ends[0].split("\\s+", 2);
+                String[] last = ends[1].split("\\s+", 2);
+                command.type = first[0];
+                command.item = first.length > 1 ? first[1] : "";
+                command.targetType = last[0];
+                command.target = last.length > 1 ? last[1] : "";
+                break;
+
+            default:
+                break;
+        }
+        return command;
+    }
+
+
+    /**
+     * Perform one command on the database.
+     * 
+     * @param command
+     *            The command.
+     * @throws Exception
+     *             The error met while reading or splitting the command.
+     */
+    void execute(Command command) throws Exception {
+        if (command.error != null) {
+            throw command.error;
+        }
+        switch (command.name) {
+            case "debug":
+                output.write(OutputSink.Event.MESSAGE, "debug cmd activated");
+                break;
+
+            case "insert":
+                if (command.hashed) {
+                    database.insert(command.artist, command.artistHash,
+                        command.artistId, command.song, command.songHash,
+                        command.songId, command.foundAt);
+                }
+                else {
+                    database.insert(command.artist, command.song);
+                }
+                break;
+
+            case "remove":
+                if (command.type.equals("song")) {
+                    database.removeSong(command.item);
+                }
+                else if (command.type.equals("artist")) {
+                    database.removeArtist(command.item);
+                }
+                else {
+                    output.write(OutputSink.Event.MESSAGE,
+                        "Unrecognized input " + command.name);
+                }
+                break;
+
+            case "print":
+                if (command.type.equals("song")) {
+                    database.printSong();
+                }
+                else if (command.type.equals("artist")) {
+                    database.printArtist();
+                }
+                else if (command.type.equals("graph")) {
+                    database.printGraph();
+                }
+                else {
+                    output.write(OutputSink.Event.MESSAGE,
+                        "Unrecognized input " + command.name);
+                }
+                break;
+
+            case "save":
+                database.save(command.item);
+                break;
+
+            case "load":
+                database.load(command.item);
+                break;
+
+            case "path":
+                if (isRecordType(command.type) && isRecordType(
+                    command.targetType)) {
+                    database.path(command.type.equals("artist"),
+                        command.item, command.targetType.equals("artist"),
+                        command.target);
+                }
+                else {
+                    output.write(OutputSink.Event.MESSAGE,
+                        "Unrecognized input " + command.name);
+                }
+                break;
+
+            default:
+                output.write(OutputSink.Event.MESSAGE, "Unrecognized input "
+                    + command.name);
+                break;
+        }
+    }
+
+
+    /**
+     * Check whether a word names one of the two kinds of record.
+     * 
+     * @param type
+     *            The word.
+     * @return True for "artist" and "song".
+     */
+    private static boolean isRecordType(String type) {
+        return type.equals("artist") || type.equals("song");
+    }
+
+    /**
+     * The pairs of a run of inserts, read from the file as they are taken.
+     * The run ends at the first other command, or at an error, which is
+     * kept to be performed once the run is in.
+     */
+    private static class InsertRun implements Iterator<String[]> {
+        private CommandReader sc;
+        private Command next;
+        private Command stop;
+
+        /**
+         * Start a run at an insert.
+         */
+        InsertRun(CommandReader sc, Command first) {
+            this.sc = sc;
+            next = first;
+        }
+
+
+        @Override
+        public boolean hasNext() {
+            if (next == null && stop == null) {
+                try {
+                    if (sc.hasNext()) {
+                        Command command = read(sc, false);
+                        if (command.name.equals("insert")) {
+                            next = command;
                         }
                         else {
-                            System.out.println("Unrecognized input " + cmd);
+                            stop = command;
                         }
-                        break;
-
-                    default:
-                        System.out.println("Unrecognized input " + cmd);
-                        break;
+                    }
+                }
+                catch (Exception e) {
+                    stop = Command.failed(e);
                 }
             }
+            return next != null;
         }
-        catch (FileNotFoundException e) {
-            System.out.println("No such file.");
-            throw e;
+
+
+        @Override
+        public String[] next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            String[] pair = { next.artist, next.song };
+            next = null;
+            return pair;
         }
-        catch (Exception e) {
-            System.out.println("An error occurs while reading the file.");
-            throw e;
+    }
+
+    /**
+     * One command read from the file, with its arguments.
+     */
+    static class Command {
+        private String name;
+        private String type;
+        private String item;
+        private String artist;
+        private String song;
+        private String targetType; // The second record of a path
+        private String target;
+        private byte[] line; // An insert's raw line, until resolve()
+        private boolean hashed;
+        private long artistHash;
+        private long songHash;
+        private int artistId = SymbolTable.NOT_FOUND; // Found by lookup()
+        private int songId = SymbolTable.NOT_FOUND;
+        private long foundAt = -1; // The epoch the ids were found at
+        private Exception error;
+
+        /**
+         * Create a command that fails when it runs, for an error met while
+         * reading.
+         */
+        static Command failed(Exception error) {
+            Command command = new Command();
+            command.error = error;
+            return command;
         }
 
-    }
 
+        /**
+         * Split a raw insert line and fold both keys. This is the part of
+         * an insert that needs no database, so it can run on any thread.
+         */
+        void resolve() {
+            if (line == null) {
+                return;
+            }
+            try {
+                String[] s = CommandReader.pair(line, line.length, Charset
+                    .defaultCharset());
+                artist = s[0];
+                song = s[1];
+                artistHash = Hash.fold(artist);
+                songHash = Hash.fold(song);
+                hashed = true;
+            }
+            catch (RuntimeException e) {
+                error = e;
+            }
+            line = null;
+        }
+
+
+        /**
+         * Look up the ids of both keys of a resolved insert, for those
+         * already in the database. The epoch is read first, so the writer
+         * only uses the ids if nothing was removed since.
+         */
+        void lookup(Database database) {
+            if (!hashed) {
+                return;
+            }
+            foundAt = database.epoch();
+            artistId = database.idOf(true, artist, artistHash);
+            songId = database.idOf(false, song, songHash);
+        }
+    }
 }
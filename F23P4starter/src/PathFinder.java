@@ -0,0 +1,202 @@
+import java.util.Arrays;
+
+/**
+ * The class for finding a shortest path between two nodes of a GraphL by
+ * breadth first search from both ends. Each step grows the side whose
+ * frontier has fewer edges by one level, so both searches stay small and
+ * meet in the middle. Every edge the database inserts has weight 1, so
+ * the path with the fewest hops is the shortest.
+ *
+ * The per node buffers are kept between searches and only grow with the
+ * graph. A node counts as seen by a side only if its mark holds the
+ * current search's stamp, so nothing is cleared between searches and a
+ * search only touches the nodes it reaches.
+ *
+ * @author Yu-Kai Lo
+ * @version 1.0
+ */
+public class PathFinder {
+    private GraphL graph;
+    private Side from;
+    private Side to;
+    private int stamp;
+    private int[] targets = new int[16];
+    private int[] weights = new int[16];
+
+    /**
+     * Create a path finder over a graph.
+     *
+     * @param graph
+     *            The graph to search.
+     */
+    PathFinder(GraphL graph) {
+        this.graph = graph;
+        from = new Side();
+        to = new Side();
+    }
+
+
+    /**
+     * Find a shortest path between two nodes.
+     *
+     * @param source
+     *            The first node.
+     * @param target
+     *            The last node.
+     * @return The nodes along the path, from source to target, or null if
+     *         there is no path.
+     */
+    public int[] find(int source, int target) {
+        int n = graph.nodeCount();
+        if (from.mark.length < n) {
+            from.grow(n);
+            to.grow(n);
+        }
+        if (++stamp == 0) {
+            from.clear();
+            to.clear();
+            stamp = 1;
+        }
+        from.start(source);
+        to.start(target);
+        if (source == target) {
+            return new int[] { source };
+        }
+
+        while (from.size > 0 && to.size > 0) {
+            Side side = from.edges <= to.edges ? from : to;
+            Side other = side == from ? to : from;
+            long meet = expand(side, other);
+            if (meet >= 0) {
+                int a = (int)(meet >>> 32);
+                int b = (int)meet;
+                return side == from ? join(a, b) : join(b, a);
+            }
+        }
+        return null;
+    }
+
+
+    /**
+     * Grow one side's search by a level, stopping at the first edge to a
+     * node the other side has seen. The sides take turns a whole level at
+     * a time, so any such node is in the other side's latest level, or
+     * the two would have met before. Every edge found closes a path of
+     * the same length, and that length is the shortest.
+     *
+     * @param side
+     *            The side to grow.
+     * @param other
+     *            The other side.
+     * @return The edge where the shortest path crosses, as the node on
+     *         this side in the high half and the node on the other side in
+     *         the low half, or -1 if the sides have not met.
+     */
+    private long expand(Side side, Side other) {
+        int level = side.size;
+        side.size = 0;
+        side.edges = 0;
+        for (int i = 0; i < level; i++) {
+            int v = side.frontier[i];
+            if (graph.degree(v) > targets.length) {
+                targets = new int[graph.degree(v) * 2];
+                weights = new int[graph.degree(v) * 2];
+            }
+            int count = graph.copyEdges(v, targets, weights, 0);
+            for (int e = 0; e < count; e++) {
+                int w = targets[e];
+                if (other.mark[w] == stamp) {
+                    return ((long)v << 32) | w;
+                }
+                if (side.mark[w] != stamp) {
+                    side.reach(w, v);
+                }
+            }
+        }
+        int[] temp = side.frontier;
+        side.frontier = side.next;
+        side.next = temp;
+        return -1;
+    }
+
+
+    /**
+     * Build the path through an edge from the source side to the target
+     * side.
+     *
+     * @param a
+     *            The end of the edge the source side reached.
+     * @param b
+     *            The end of the edge the target side reached.
+     * @return The nodes along the path.
+     */
+    private int[] join(int a, int b) {
+        int[] path = new int[from.dist[a] + 1 + to.dist[b] + 1];
+        for (int i = from.dist[a], v = a; i >= 0; i--, v = from.parent[v]) {
+            path[i] = v;
+        }
+        for (int i = from.dist[a] + 1, v = b; i < path.length; i++,
+            v = to.parent[v]) {
+            path[i] = v;
+        }
+        return path;
+    }
+
+
+    /**
+     * The buffers of the search from one end.
+     */
+    private class Side {
+        private int[] mark = new int[0];
+        private int[] parent = new int[0];
+        private int[] dist = new int[0];
+        private int[] frontier = new int[0];
+        private int[] next = new int[0];
+        private int size; // Nodes in frontier, then in next while growing
+        private long edges; // Edges out of the nodes counted by size
+
+        /**
+         * Make room for more nodes.
+         */
+        void grow(int n) {
+            mark = Arrays.copyOf(mark, n);
+            parent = Arrays.copyOf(parent, n);
+            dist = Arrays.copyOf(dist, n);
+            frontier = new int[n];
+            next = new int[n];
+        }
+
+
+        /**
+         * Forget every mark, once the stamps wrap around.
+         */
+        void clear() {
+            Arrays.fill(mark, 0);
+        }
+
+
+        /**
+         * Start a search at a node.
+         */
+        void start(int v) {
+            mark[v] = stamp;
+            parent[v] = -1;
+            dist[v] = 0;
+            frontier[0] = v;
+            size = 1;
+            edges = graph.degree(v);
+        }
+
+
+        /**
+         * Add a node to the next level, reached from v.
+         */
+        void reach(int w, int v) {
+            mark[w] = stamp;
+            parent[w] = v;
+            dist[w] = dist[v] + 1;
+            next[size++] = w;
+            edges += graph.degree(w);
+        }
+    }
+}
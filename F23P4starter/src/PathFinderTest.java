@@ -0,0 +1,107 @@
+import java.util.Arrays;
+import java.util.Random;
+import student.TestCase;
+
+/**
+ * This class was designed to test the path finder.
+ *
+ * @author Yu-Kai Lo
+ * @version 1.0
+ */
+public class PathFinderTest extends TestCase {
+
+    /**
+     * Find the hops between two nodes with a plain breadth first search.
+     *
+     * @param g
+     *            The graph.
+     * @param source
+     *            The first node.
+     * @param target
+     *            The last node.
+     * @return The hops, or -1 if there is no path.
+     */
+    private int hops(GraphL g, int source, int target) {
+        int[] dist = new int[g.nodeCount()];
+        Arrays.fill(dist, -1);
+        int[] queue = new int[g.nodeCount()];
+        int tail = 0;
+        queue[tail++] = source;
+        dist[source] = 0;
+        for (int head = 0; head < tail; head++) {
+            int v = queue[head];
+            for (int w : g.neighbors(v)) {
+                if (dist[w] == -1) {
+                    dist[w] = dist[v] + 1;
+                    queue[tail++] = w;
+                }
+            }
+        }
+        return dist[target];
+    }
+
+
+    /**
+     * This test tries many searches on random sparse graphs, which leave
+     * some pairs unconnected, and checks each path is a real one of the
+     * fewest hops.
+     */
+    public void testRandomGraphs() {
+        Random random = new Random(25);
+        for (int round = 0; round < 10; round++) {
+            int n = 2 + random.nextInt(400);
+            GraphL g = new GraphL();
+            g.init(n);
+            for (int e = random.nextInt(n * 2); e > 0; e--) {
+                int a = random.nextInt(n);
+                int b = random.nextInt(n);
+                if (a != b) {
+                    g.addEdge(a, b, 1);
+                    g.addEdge(b, a, 1);
+                }
+            }
+            PathFinder finder = new PathFinder(g);
+            for (int query = 0; query < 200; query++) {
+                int source = random.nextInt(n);
+                int target = random.nextInt(n);
+                int[] path = finder.find(source, target);
+                int expected = hops(g, source, target);
+                if (expected < 0) {
+                    assertNull(path);
+                    continue;
+                }
+                assertEquals(expected, path.length - 1);
+                assertEquals(source, path[0]);
+                assertEquals(target, path[path.length - 1]);
+                for (int i = 1; i < path.length; i++) {
+                    assertTrue(g.hasEdge(path[i - 1], path[i]));
+                }
+            }
+        }
+    }
+
+
+    /**
+     * This test tries a long path, which makes one side's frontier much
+     * larger than the other's, and a graph that grows between searches.
+     */
+    public void testGrowingGraph() {
+        GraphL g = new GraphL();
+        g.init(4);
+        PathFinder finder = new PathFinder(g);
+        g.addEdge(0, 1, 1);
+        g.addEdge(1, 0, 1);
+        assertEquals(2, finder.find(1, 0).length);
+        for (int v = 2; v < 1000; v++) {
+            g.addEdge(v - 1, v, 1);
+            g.addEdge(v, v - 1, 1);
+        }
+        for (int leaf = 1000; leaf < 1100; leaf++) {
+            g.addEdge(0, leaf, 1);
+            g.addEdge(leaf, 0, 1);
+        }
+        assertEquals(1001, finder.find(1050, 999).length);
+        assertEquals(1001, finder.find(999, 1050).length);
+        assertNull(finder.find(5, g.nodeCount() - 1));
+    }
+}
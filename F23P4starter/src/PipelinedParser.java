@@ -0,0 +1,169 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * The PipelinedParser class runs a command file in three stages on
+ * separate threads. A reader thread scans the commands in batches; an
+ * insert only has its line copied out as raw bytes. A pool of workers then
+ * decodes and splits those lines, folds both keys of each insert and, if
+ * the database keeps CONCURRENT tables, looks up the ids of the keys it
+ * already holds. The calling thread is the single writer: it takes the
+ * batches back in file order and performs every command on the database,
+ * searching its tables again only for keys that were missing or whose ids
+ * may have changed since, as told by Database.epoch().
+ *
+ * The commands are still scanned by the one reader thread, as a command
+ * may span lines and the file cannot be cut into chunks without reading
+ * it. The workers only take the decoding, folding and searching off the
+ * writer.
+ * 
+ * The batches travel through a bounded queue of futures, in the order they
+ * were read, so the reader never gets more than QUEUE_BATCHES ahead and
+ * the writer sees the commands exactly as the plain Parser would. An error
+ * met while reading or splitting is carried to the writer as a failed
+ * command, so the commands before it still run and the same message is
+ * printed at the same point.
+ *
+ * @author Yu-Kai Lo
+ * @version 1.0
+ */
+public class PipelinedParser extends Parser {
+    /**
+     * The number of commands in each batch.
+     */
+    static final int BATCH_SIZE = 4096;
+
+    /**
+     * The number of batches the reader may get ahead of the writer.
+     */
+    static final int QUEUE_BATCHES = 64;
+
+    private int threads;
+
+    /**
+     * Create a new pipelined Parser with the specified Database.
+     *
+     * @param database
+     *            The Database to perform actions on.
+     * @param threads
+     *            The number of worker threads that split the inserts.
+     */
+    public PipelinedParser(Database database, int threads) {
+        super(database);
+        this.threads = Math.max(1, threads);
+    }
+
+
+    @Override
+    protected void parse(String inputFile) throws Exception {
+        ExecutorService workers = Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "ingest-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        BlockingQueue<Future<List<Command>>> batches =
+            new ArrayBlockingQueue<Future<List<Command>>>(QUEUE_BATCHES);
+        try (CommandReader sc = new CommandReader(inputFile)) {
+            Thread reader = new Thread(() -> read(sc, workers, batches),
+                "ingest-reader");
+            reader.setDaemon(true);
+            reader.start();
+            try {
+                write(batches);
+            }
+            finally {
+                reader.interrupt();
+                reader.join();
+            }
+        }
+        finally {
+            workers.shutdownNow();
+        }
+    }
+
+
+    /**
+     * The reader stage: read the commands in batches and hand each batch
+     * to the workers, which split its inserts and look up their ids. An
+     * empty batch marks the end.
+     * 
+     * @param sc
+     *            The reader.
+     * @param workers
+     *            The workers.
+     * @param batches
+     *            The queue to the writer.
+     */
+    private void read(CommandReader sc, ExecutorService workers,
+        BlockingQueue<Future<List<Command>>> batches) {
+        try {
+            List<Command> batch = new ArrayList<Command>(BATCH_SIZE);
+            boolean more = true;
+            while (more) {
+                try {
+                    more = sc.hasNext();
+                    if (more) {
+                        batch.add(read(sc, true));
+                    }
+                }
+                catch (Exception e) {
+                    batch.add(Command.failed(e));
+                    more = false;
+                }
+                if (batch.size() == BATCH_SIZE || !more) {
+                    final List<Command> full = batch;
+                    batches.put(workers.submit(() -> {
+                        for (Command command : full) {
+                            command.resolve();
+                            command.lookup(database);
+                        }
+                        return full;
+                    }));
+                    batch = new ArrayList<Command>(BATCH_SIZE);
+                }
+            }
+            batches.put(CompletableFuture.completedFuture(batch));
+        }
+        catch (InterruptedException e) {
+            // The writer stopped early.
+        }
+    }
+
+
+    /**
+     * The writer stage: perform the commands of each batch in order.
+     * 
+     * @param batches
+     *            The queue from the reader.
+     * @throws Exception
+     *             The first error met in the file.
+     */
+    private void write(BlockingQueue<Future<List<Command>>> batches)
+        throws Exception {
+        while (true) {
+            List<Command> batch;
+            try {
+                batch = batches.take().get();
+            }
+            catch (ExecutionException e) {
+                if (e.getCause() instanceof Exception) {
+                    throw (Exception)e.getCause();
+                }
+                throw e;
+            }
+            if (batch.isEmpty()) {
+                return;
+            }
+            for (Command command : batch) {
+                execute(command);
+            }
+        }
+    }
+}
@@ -0,0 +1,195 @@
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.Random;
+import student.TestCase;
+
+/**
+ * This class was designed to test the pipelined parser.
+ *
+ * @author Yu-Kai Lo
+ * @version 1.0
+ */
+public class PipelinedParserTest extends TestCase {
+
+    /**
+     * Run a command file through a parser and return all it printed,
+     * followed by the class of the error it threw, if any. The pipelined
+     * parser gets CONCURRENT tables, as GraphProject gives it, so its
+     * workers look up the ids.
+     * 
+     * @param inputFile
+     *            The command file.
+     * @param threads
+     *            The number of worker threads, or 0 for the plain parser.
+     * @return The printed lines.
+     */
+    private String run(String inputFile, int threads) {
+        EventSink events = new EventSink();
+        Database database = new Database(10, events, threads > 0
+            ? SymbolTable.Mode.CONCURRENT
+            : SymbolTable.Mode.RECORDS);
+        Parser parser = threads > 0
+            ? new PipelinedParser(database, threads)
+            : new Parser(database);
+        StringBuilder builder = new StringBuilder();
+        try {
+            parser.fileparser(inputFile);
+        }
+        catch (Exception e) {
+            builder.append(e.getClass().getName()).append('\n');
+        }
+        for (int i = 0; i < events.size(); i++) {
+            builder.append(events.line(i)).append('\n');
+        }
+        return builder.toString();
+    }
+
+
+    /**
+     * This test tries every sample command file on both parsers.
+     */
+    public void testSampleFiles() {
+        String[] files = { "P4sampleInput.txt", "P4sampleInput2.txt",
+            "P4removeInput.txt", "P4testInput.txt", "P4invalidTestInput.txt",
+            "P4errorInput.txt", "missing.txt" };
+        for (String file : files) {
+            assertEquals(run(file, 0), run(file, 3));
+        }
+    }
+
+
+    /**
+     * This test tries a file of many batches with prints and removes
+     * among the inserts, ending in a line that cannot be split.
+     * 
+     * @throws Exception
+     */
+    public void testManyBatches() throws Exception {
+        File input = File.createTempFile("P4pipeline", ".txt");
+        input.deleteOnExit();
+        StringBuilder commands = new StringBuilder();
+        Random random = new Random(20);
+        for (int i = 0; i < 3 * PipelinedParser.BATCH_SIZE; i++) {
+            int command = random.nextInt(100);
+            if (command == 0) {
+                commands.append("print graph\n");
+            }
+            else if (command < 5) {
+                commands.append("remove song Song " + random.nextInt(500)
+                    + "\n");
+            }
+            else {
+                commands.append("insert Artist " + random.nextInt(300)
+                    + "<SEP>Song " + random.nextInt(500) + "\n");
+            }
+        }
+        commands.append("insert no separator\ninsert A<SEP>B\n");
+        FileOutputStream out = new FileOutputStream(input);
+        out.write(commands.toString().getBytes());
+        out.close();
+        String expected = run(input.getPath(), 0);
+        assertTrue(expected.startsWith("java.util.InputMismatchException"));
+        assertEquals(expected, run(input.getPath(), 1));
+        assertEquals(expected, run(input.getPath(), 4));
+    }
+
+
+    /**
+     * This test tries inserts whose ids were looked up before the keys
+     * were removed and the ids handed out again, which the writer must
+     * not use, and a file where the workers may look up such ids.
+     * 
+     * @throws Exception
+     */
+    public void testStaleIds() throws Exception {
+        EventSink events = new EventSink();
+        Database database = new Database(10, events,
+            SymbolTable.Mode.CONCURRENT);
+        database.insert("A", "S");
+        long foundAt = database.epoch();
+        int artistId = database.idOf(true, "A", Hash.fold("A"));
+        int songId = database.idOf(false, "S", Hash.fold("S"));
+        assertEquals(0, artistId);
+        assertEquals(1, songId);
+        assertEquals(SymbolTable.NOT_FOUND, new Database(10, events)
+            .idOf(true, "A", Hash.fold("A")));
+        database.removeArtist("A");
+        database.removeSong("S");
+        database.insert("B", "T");
+        assertFalse(foundAt == database.epoch());
+        int before = events.size();
+        database.insert("A", Hash.fold("A"), artistId, "S", Hash.fold("S"),
+            songId, foundAt);
+        assertEquals(before + 2, events.size());
+        assertEquals("|A| is added to the Artist database.", events.line(
+            before));
+        assertEquals("|S| is added to the Song database.", events.line(
+            before + 1));
+        database.printGraph();
+        assertEquals("There are 2 connected components", events.line(
+            before + 2));
+
+        File input = File.createTempFile("P4stale", ".txt");
+        input.deleteOnExit();
+        StringBuilder commands = new StringBuilder();
+        int pairs = PipelinedParser.BATCH_SIZE;
+        for (int i = 0; i < pairs; i++) {
+            commands.append("insert Artist " + i + "<SEP>Song " + i + "\n");
+        }
+        for (int i = 0; i < pairs; i += 2) {
+            commands.append("remove song Song " + i + "\n");
+            commands.append("remove artist Artist " + i + "\n");
+            commands.append("remove artist Artist " + (i + 1) + "\n");
+        }
+        for (int i = 0; i < pairs; i++) {
+            commands.append("insert Artist " + i + "<SEP>Song " + (i + 1)
+                + "\n");
+        }
+        commands.append("print graph\n");
+        FileOutputStream out = new FileOutputStream(input);
+        out.write(commands.toString().getBytes());
+        out.close();
+        String expected = run(input.getPath(), 0);
+        assertEquals(expected, run(input.getPath(), 1));
+        assertEquals(expected, run(input.getPath(), 3));
+    }
+
+
+    /**
+     * This test looks up ids while a key is being removed, as a worker
+     * could, and checks that the writer does not use them even though no
+     * other change follows.
+     * 
+     * @throws Exception
+     */
+    public void testIdsReadDuringRemove() throws Exception {
+        Database[] database = new Database[1];
+        long[] seen = new long[3];
+        EventSink events = new EventSink() {
+            @Override
+            public void write(Event event, String line) {
+                super.write(event, line);
+                if (event == Event.REMOVED && line.startsWith("|A|")) {
+                    seen[0] = database[0].epoch();
+                    seen[1] = database[0].idOf(true, "A", Hash.fold("A"));
+                    seen[2] = database[0].idOf(false, "S", Hash.fold("S"));
+                }
+            }
+        };
+        database[0] = new Database(10, events, SymbolTable.Mode.CONCURRENT);
+        database[0].insert("A", "S");
+        database[0].insert("B", "S");
+        database[0].removeArtist("A");
+        assertEquals(1, seen[0] & 1);
+        assertEquals(0, database[0].epoch() & 1);
+        assertEquals(SymbolTable.NOT_FOUND, (int)seen[1]);
+        assertEquals(1, seen[2]);
+
+        database[0].insert("B", "T");
+        int before = events.size();
+        database[0].insert("A", Hash.fold("A"), 0, "S", Hash.fold("S"),
+            (int)seen[2], seen[0]);
+        assertEquals("|A| is added to the Artist database.", events.line(
+            before));
+    }
+}
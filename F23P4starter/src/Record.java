@@ -7,7 +7,8 @@
  */
 public class Record {
     private String key;
-    private int value;
+    private volatile int value; // Renumbered while readers search
+    private long hash;
 
     /**
      * Create a new Record with the specified key and value.
@@ -18,8 +19,24 @@ public class Record {
      *            The value to be associated with the key.
      */
     public Record(String key, int value) {
+        this(key, value, Hash.fold(key));
+    }
+
+
+    /**
+     * Create a new Record whose key has already been hashed.
+     * 
+     * @param key
+     *            The unique key associated with the record.
+     * @param value
+     *            The value to be associated with the key.
+     * @param hash
+     *            The folded sum of the key, from Hash.fold().
+     */
+    public Record(String key, int value, long hash) {
         this.key = key;
         this.value = value;
+        this.hash = hash;
     }
 
 
@@ -33,6 +50,17 @@ public class Record {
     }
 
 
+    /**
+     * Gets the cached hash of the key, so the key never has to be hashed
+     * again.
+     *
+     * @return The folded sum of the key.
+     */
+    public long getHash() {
+        return hash;
+    }
+
+
     /**
      * Gets the value of the specific record.
      *
@@ -42,4 +70,15 @@ public class Record {
         return value;
     }
 
+
+    /**
+     * Sets the value of the specific record.
+     *
+     * @param value
+     *            The new value of the record.
+     */
+    public void setValue(int value) {
+        this.value = value;
+    }
+
 }
@@ -0,0 +1,242 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * The Snapshot class reads and writes the binary snapshot files that hold
+ * a whole database. A file starts with a 24 byte header: the magic number,
+ * the format version, the CRC32 of the body, a reserved int and the body
+ * length as a long. The body is big endian. It is written to a temporary
+ * file that is moved over the old snapshot once it is complete, so a
+ * crash never leaves half a snapshot behind.
+ * 
+ * Loading maps the file and reads the body straight out of the page cache,
+ * after the length and checksum have been checked.
+ *
+ * @author Yu-Kai Lo
+ * @version 1.0
+ */
+public class Snapshot {
+    /**
+     * The first four bytes of a snapshot, "P4DB".
+     */
+    static final int MAGIC = 0x50344442;
+
+    /**
+     * The format version written, and the newest one that can be read.
+     * Version 2 bodies start with the id and position of the command log
+     * the snapshot was saved from.
+     */
+    static final int VERSION = 2;
+
+    private static final int HEADER_BYTES = 24;
+
+    /**
+     * The writer of a snapshot body.
+     */
+    interface BodyWriter {
+        /**
+         * Write the body.
+         * 
+         * @param out
+         *            The body.
+         * @throws IOException
+         */
+        void write(DataOutput out) throws IOException;
+    }
+
+
+    /**
+     * No instances are needed.
+     */
+    private Snapshot() {
+        // No instances are needed.
+    }
+
+
+    /**
+     * Write a snapshot file.
+     * 
+     * @param path
+     *            The file.
+     * @param body
+     *            The writer of the body.
+     * @throws IOException
+     */
+    static void write(String path, BodyWriter body) throws IOException {
+        File temp = new File(path + ".tmp");
+        try (FileOutputStream file = new FileOutputStream(temp)) {
+            FileChannel channel = file.getChannel();
+            channel.position(HEADER_BYTES);
+            CheckedOutputStream checked = new CheckedOutputStream(file,
+                new CRC32());
+            DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(checked, 1 << 16));
+            body.write(out);
+            out.flush();
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            header.putInt(MAGIC);
+            header.putInt(VERSION);
+            header.putInt((int)checked.getChecksum().getValue());
+            header.putInt(0);
+            header.putLong(channel.position() - HEADER_BYTES);
+            header.flip();
+            channel.write(header, 0);
+            channel.force(true);
+        }
+        Files.move(temp.toPath(), new File(path).toPath(),
+            StandardCopyOption.REPLACE_EXISTING,
+            StandardCopyOption.ATOMIC_MOVE);
+    }
+
+
+    /**
+     * Map a snapshot file and check its header and checksum.
+     * 
+     * @param path
+     *            The file.
+     * @return The file, mapped and positioned at the start of the body.
+     * @throws IOException
+     *             If the file cannot be read or is not a valid snapshot.
+     */
+    static ByteBuffer read(String path) throws IOException {
+        try (FileChannel channel = FileChannel.open(new File(path).toPath(),
+            StandardOpenOption.READ)) {
+            long length = channel.size();
+            if (length < HEADER_BYTES) {
+                throw new IOException("too short");
+            }
+            ByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                length);
+            if (map.getInt(0) != MAGIC) {
+                throw new IOException("not a snapshot");
+            }
+            if (map.getInt(4) > VERSION) {
+                throw new IOException("version " + map.getInt(4)
+                    + " is newer than " + VERSION);
+            }
+            if (map.getLong(16) != length - HEADER_BYTES) {
+                throw new IOException("truncated");
+            }
+            map.position(HEADER_BYTES);
+            CRC32 crc = new CRC32();
+            crc.update(map.duplicate());
+            if ((int)crc.getValue() != map.getInt(8)) {
+                throw new IOException("checksum mismatch");
+            }
+            return map;
+        }
+    }
+
+
+    /**
+     * Return the format version of a snapshot read by read().
+     * 
+     * @param snapshot
+     *            The mapped file.
+     * @return The version.
+     */
+    static int version(ByteBuffer snapshot) {
+        return snapshot.getInt(4);
+    }
+
+
+    /**
+     * Write a string as its UTF-8 length and bytes, or -1 for null.
+     * 
+     * @param out
+     *            The body.
+     * @param s
+     *            The string, or null.
+     * @throws IOException
+     */
+    static void writeString(DataOutput out, String s) throws IOException {
+        if (s == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+
+    /**
+     * Read a string written by writeString.
+     * 
+     * @param in
+     *            The body.
+     * @return The string, or null.
+     */
+    static String readString(ByteBuffer in) {
+        int length = in.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+
+    /**
+     * Write a hash table slot by slot, so that it loads with the same
+     * layout. The slots end with -1.
+     * 
+     * @param out
+     *            The body.
+     * @param table
+     *            The table.
+     * @throws IOException
+     */
+    static void writeTable(DataOutput out, SymbolTable table)
+        throws IOException {
+        out.writeInt(table.capacity());
+        table.visitSlots((pos, key, hash, value) -> {
+            out.writeInt(pos);
+            writeString(out, key);
+            out.writeLong(hash);
+            out.writeInt(value);
+        });
+        out.writeInt(-1);
+    }
+
+
+    /**
+     * Read a hash table written by writeTable into a new table.
+     * 
+     * @param in
+     *            The body.
+     * @param mode
+     *            How the new table stores its entries.
+     * @param type
+     *            The type of the table.
+     * @param output
+     *            The sink for the table's messages.
+     * @return The table.
+     * @throws IOException
+     */
+    static SymbolTable readTable(ByteBuffer in, SymbolTable.Mode mode,
+        String type, OutputSink output) throws IOException {
+        SymbolTable table = SymbolTable.create(mode, in.getInt(), type,
+            output);
+        for (int pos = in.getInt(); pos >= 0; pos = in.getInt()) {
+            String key = readString(in);
+            long hash = in.getLong();
+            table.restoreSlot(pos, key, hash, in.getInt());
+        }
+        return table;
+    }
+}
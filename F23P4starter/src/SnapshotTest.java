@@ -0,0 +1,175 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Random;
+import student.TestCase;
+
+/**
+ * This class was designed to test saving and loading database snapshots.
+ *
+ * @author Yu-Kai Lo
+ * @version 1.0
+ */
+public class SnapshotTest extends TestCase {
+    private File path;
+
+    /**
+     * Sets up the tests that follow.
+     * 
+     * @throws IOException
+     */
+    public void setUp() throws IOException {
+        path = File.createTempFile("snapshot", ".p4db");
+        path.deleteOnExit();
+    }
+
+
+    /**
+     * Run random commands against a database.
+     * 
+     * @param database
+     *            The database.
+     * @param seed
+     *            The seed of the commands.
+     * @param count
+     *            The number of commands.
+     * @throws Exception
+     */
+    private void churn(Database database, long seed, int count)
+        throws Exception {
+        Random random = new Random(seed);
+        for (int i = 0; i < count; i++) {
+            String artist = "Artist " + random.nextInt(40);
+            String song = "Song " + random.nextInt(60);
+            int command = random.nextInt(8);
+            if (command == 0) {
+                database.removeArtist(artist);
+            }
+            else if (command == 1) {
+                database.removeSong(song);
+            }
+            else {
+                database.insert(artist, song);
+            }
+        }
+    }
+
+
+    /**
+     * Return everything a database prints about its tables and graph.
+     * 
+     * @param database
+     *            The database.
+     * @param events
+     *            The sink the database writes to.
+     * @return The printed lines.
+     */
+    private String printAll(Database database, EventSink events) {
+        int from = events.size();
+        database.printArtist();
+        database.printSong();
+        database.printGraph();
+        StringBuilder builder = new StringBuilder();
+        for (int i = from; i < events.size(); i++) {
+            builder.append(events.line(i)).append('\n');
+        }
+        return builder.toString();
+    }
+
+
+    /**
+     * This test tries to save a database, load it in every storage mode and
+     * check that each prints and then behaves the same as the original.
+     * 
+     * @throws Exception
+     */
+    public void testRoundTrip() throws Exception {
+        EventSink events = new EventSink();
+        Database database = new Database(10, events);
+        churn(database, 17, 400);
+        database.save(path.getPath());
+        assertEquals("|" + path.getPath() + "| is saved.", events.line(events
+            .size() - 1));
+        String before = printAll(database, events);
+        assertTrue(before.contains("TOMBSTONE"));
+        churn(database, 18, 300);
+        String after = printAll(database, events);
+
+        for (SymbolTable.Mode mode : SymbolTable.Mode.values()) {
+            EventSink loadedEvents = new EventSink();
+            Database loaded = new Database(10, loadedEvents, mode);
+            loaded.insert("Other", "Other");
+            loaded.load(path.getPath());
+            assertEquals(before, printAll(loaded, loadedEvents));
+            churn(loaded, 18, 300);
+            assertEquals(after, printAll(loaded, loadedEvents));
+        }
+    }
+
+
+    /**
+     * This test tries to load a damaged snapshot and a missing one, and
+     * checks that the database is left as it was.
+     * 
+     * @throws Exception
+     */
+    public void testDamaged() throws Exception {
+        EventSink events = new EventSink();
+        Database database = new Database(10, events);
+        churn(database, 19, 100);
+        database.save(path.getPath());
+        try (RandomAccessFile file = new RandomAccessFile(path, "rw")) {
+            file.seek(file.length() - 5);
+            int b = file.read();
+            file.seek(file.length() - 5);
+            file.write(b ^ 1);
+        }
+        String before = printAll(database, events);
+        database.load(path.getPath());
+        assertEquals("|" + path.getPath()
+            + "| could not be loaded: checksum mismatch", events.line(events
+                .size() - 1));
+        assertEquals(before, printAll(database, events));
+
+        try (RandomAccessFile file = new RandomAccessFile(path, "rw")) {
+            file.setLength(file.length() - 1);
+        }
+        database.load(path.getPath());
+        assertEquals("|" + path.getPath() + "| could not be loaded: truncated",
+            events.line(events.size() - 1));
+        database.load(path.getPath() + ".missing");
+        assertTrue(events.line(events.size() - 1).startsWith("|" + path
+            .getPath() + ".missing| could not be loaded"));
+    }
+
+
+    /**
+     * This test tries the save and load commands and the command line
+     * options.
+     * 
+     * @throws Exception
+     */
+    public void testCommands() throws Exception {
+        File commands = File.createTempFile("commands", ".txt");
+        commands.deleteOnExit();
+        java.nio.file.Files.write(commands.toPath(), ("insert A<SEP>B\n"
+            + "save " + path.getPath() + "\n" + "insert C<SEP>B\n" + "load "
+            + path.getPath() + "\n" + "print artist\n").getBytes());
+        GraphProject.main(new String[] { "10", commands.getPath() });
+        String output = systemOut().getHistory();
+        assertTrue(output.contains("|" + path.getPath() + "| is loaded."));
+        assertTrue(output.endsWith("total artists: 1\n"));
+
+        java.nio.file.Files.write(commands.toPath(), ("insert D<SEP>E\n"
+            + "print artist\n").getBytes());
+        File saved = new File(path.getPath() + ".2");
+        saved.deleteOnExit();
+        systemOut().clearHistory();
+        GraphProject.main(new String[] { "10", commands.getPath(), "-load",
+            path.getPath(), "-save", saved.getPath() });
+        output = systemOut().getHistory();
+        assertTrue(output.startsWith("|" + path.getPath() + "| is loaded.\n"));
+        assertTrue(output.endsWith("total artists: 2\n|" + saved.getPath()
+            + "| is saved.\n"));
+    }
+}
@@ -0,0 +1,59 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+
+/**
+ * The StreamSink class writes output lines to a stream through one large
+ * buffer, instead of a synchronized, flushing println per line.
+ *
+ * @author Yu-Kai Lo
+ * @version 1.0
+ */
+public class StreamSink implements OutputSink {
+    private BufferedWriter writer;
+    private boolean autoFlush;
+    private String lineEnd;
+
+    /**
+     * Create a sink over a stream.
+     * 
+     * @param out
+     *            The stream to write to.
+     * @param autoFlush
+     *            True to flush after every line, as println does.
+     */
+    public StreamSink(OutputStream out, boolean autoFlush) {
+        writer = new BufferedWriter(new OutputStreamWriter(out), 1 << 16);
+        this.autoFlush = autoFlush;
+        lineEnd = System.lineSeparator();
+    }
+
+
+    @Override
+    public void write(Event event, String line) {
+        try {
+            writer.write(line);
+            writer.write(lineEnd);
+            if (autoFlush) {
+                writer.flush();
+            }
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+
+    @Override
+    public void flush() {
+        try {
+            writer.flush();
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+}
@@ -0,0 +1,48 @@
+/**
+ * The SwitchSink class passes every line on to a target sink that can be
+ * swapped at any time. The database writes through one, so it can go quiet
+ * while it replays its command log.
+ *
+ * @author Yu-Kai Lo
+ * @version 1.0
+ */
+public class SwitchSink implements OutputSink {
+    private OutputSink target;
+
+    /**
+     * Create a sink that passes lines on to a target.
+     * 
+     * @param target
+     *            The first target.
+     */
+    public SwitchSink(OutputSink target) {
+        this.target = target;
+    }
+
+
+    /**
+     * Swap the target.
+     * 
+     * @param newTarget
+     *            The new target.
+     * @return The old target.
+     */
+    public OutputSink setTarget(OutputSink newTarget) {
+        OutputSink old = target;
+        target = newTarget;
+        return old;
+    }
+
+
+    @Override
+    public void write(Event event, String line) {
+        target.write(event, line);
+    }
+
+
+    @Override
+    public void flush() {
+        target.flush();
+    }
+
+}
@@ -0,0 +1,175 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * The SymbolTable interface is what the database needs from a table that
+ * maps artist or song names to node ids. Every implementation probes the
+ * same quadratic sequence and prints the same messages; they differ in how
+ * the entries are stored.
+ *
+ * @author Yu-Kai Lo
+ * @version 1.0
+ */
+public interface SymbolTable {
+    /**
+     * The value hashGet returns for a key that is not in the table.
+     */
+    int NOT_FOUND = -1;
+
+    /**
+     * The ways a table can store its entries.
+     */
+    enum Mode {
+        /** One Record object per key, in Hash. */
+        RECORDS,
+        /** Keys in one char arena and values in parallel arrays. */
+        PACKED,
+        /** Record slots that many threads can use at once. */
+        CONCURRENT,
+        /** Packed slots and keys in memory mapped files, off the heap. */
+        MAPPED
+    }
+
+
+    /**
+     * Create an empty table.
+     * 
+     * @param mode
+     *            How the table stores its entries.
+     * @param size
+     *            The initial size of the table.
+     * @param type
+     *            The type of the table, "Artist" or "Song".
+     * @param output
+     *            The sink for the messages.
+     * @return The table.
+     */
+    static SymbolTable create(Mode mode, int size, String type,
+        OutputSink output) {
+        switch (mode) {
+            case PACKED:
+                return new PackedHash(size, type, output);
+            case CONCURRENT:
+                return new ConcurrentHash(size, type, output);
+            case MAPPED:
+                try {
+                    return new MappedHash(size, type, output);
+                }
+                catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            default:
+                return new Hash(size, type, output);
+        }
+    }
+
+
+    /**
+     * Look up the value of a key whose folded sum is already known.
+     * 
+     * @param key
+     *            The key.
+     * @param hash
+     *            The folded sum of the key, from Hash.fold().
+     * @return The value, or NOT_FOUND.
+     */
+    int hashGet(String key, long hash);
+
+
+    /**
+     * Insert a key and its value, printing that it was added.
+     * 
+     * @param key
+     *            The key.
+     * @param hash
+     *            The folded sum of the key, from Hash.fold().
+     * @param value
+     *            The value.
+     * @throws Exception
+     */
+    void hashInsert(String key, long hash, int value) throws Exception;
+
+
+    /**
+     * Delete a key, printing that it was removed.
+     * 
+     * @param key
+     *            The key.
+     */
+    void hashDelete(String key);
+
+
+    /**
+     * Replace every value with its entry in a map of new node ids.
+     * 
+     * @param newIds
+     *            The new id of each old id.
+     */
+    void remap(int[] newIds);
+
+
+    /**
+     * Print every used slot and the number of keys.
+     */
+    void hashPrintHashtable();
+
+
+    /**
+     * Return the number of slots.
+     * 
+     * @return The table size.
+     */
+    int capacity();
+
+
+    /**
+     * Hand every used slot to a visitor in slot order, tombstones included.
+     * 
+     * @param visitor
+     *            The visitor.
+     * @throws IOException
+     *             If the visitor throws it.
+     */
+    void visitSlots(SlotVisitor visitor) throws IOException;
+
+
+    /**
+     * Fill one slot directly, as visitSlots reported it, without probing or
+     * printing. The table must be new and have the recorded capacity, so
+     * that it ends up laid out exactly as the one that was visited.
+     * 
+     * @param pos
+     *            The slot.
+     * @param key
+     *            The key, or null for a tombstone.
+     * @param hash
+     *            The folded sum of the key.
+     * @param value
+     *            The value.
+     * @throws IOException
+     *             If a table on disk cannot grow.
+     */
+    void restoreSlot(int pos, String key, long hash, int value)
+        throws IOException;
+
+    /**
+     * The callback for each used slot of a table.
+     */
+    interface SlotVisitor {
+        /**
+         * Take one used slot.
+         * 
+         * @param pos
+         *            The slot.
+         * @param key
+         *            The key, or null for a tombstone.
+         * @param hash
+         *            The folded sum of the key.
+         * @param value
+         *            The value.
+         * @throws IOException
+         */
+        void visit(int pos, String key, long hash, int value)
+            throws IOException;
+    }
+}